@@ -0,0 +1,51 @@
+package dev.practice.stock.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+public class StockBenchmarkRunner {
+
+    /**
+     * JMH 는 스레드 수를 @Param 으로 바꿀 수 없으므로, 스레드 수 마다 한번씩 실행한다.
+     *
+     * 시스템 프로퍼티 (gradle -P 로 전달)
+     * - jmh.threads : 1,8,32
+     * - jmh.strategies : StockDecreaseBenchmark.strategy 값 (기본값은 전체)
+     * - jmh.stockCount : StockDecreaseBenchmark.stockCount 값
+     * - jmh.quantity : StockDecreaseBenchmark.quantity 값
+     *
+     * 결과는 jmh.resultDir 아래에 스레드 수 별 json 으로 남는다.
+     */
+    public static void main(String[] args) throws RunnerException {
+
+        String resultDir = System.getProperty("jmh.resultDir", "build/reports/jmh");
+        new File(resultDir).mkdirs();
+
+        for (String threads : System.getProperty("jmh.threads", "1,8,32").split(",")) {
+
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(StockDecreaseBenchmark.class.getSimpleName())
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir + "/stock-decrease-t" + threads.trim() + ".json");
+
+            param(options, "strategy", "jmh.strategies");
+            param(options, "stockCount", "jmh.stockCount");
+            param(options, "quantity", "jmh.quantity");
+
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static void param(ChainedOptionsBuilder options, String name, String property) {
+        String values = System.getProperty(property);
+        if (values != null && !values.isBlank()) {
+            options.param(name, values.split(","));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package dev.practice.stock.benchmark;
+
+import dev.practice.stock.StockApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StockDecreaseBenchmark {
+
+    /**
+     * 재고 감소 전략별 성능 비교
+     *
+     * - concurrencyTestByThread100 테스트들은 정합성만 확인하므로, 처리량과 지연시간은 여기서 측정한다.
+     * - 스레드 수는 StockBenchmarkRunner 에서 jmh.threads 값 만큼 반복하며 바꾼다.
+     * - stockCount 가 1 이면 모든 스레드가 하나의 row(락)를 두고 경쟁하고, 커질수록 경쟁이 분산된다.
+     * - Mode.SampleTime 결과에서 p0.50, p0.99, p0.999 지연시간을 확인할 수 있다.
+     *
+     * 참고
+     * - local MySQL(localhost:3306), Redis(localhost:6379) 가 떠 있어야 한다.
+     * - 재고가 바닥나서 측정이 왜곡되지 않도록 충분히 큰 재고로 시작한다. (semaphore permit 이 int 이므로 Integer.MAX_VALUE)
+     */
+
+    private static final long INITIAL_QUANTITY = Integer.MAX_VALUE;
+
+    @Param({"synchronized", "keylock", "pessimistic", "conditional", "groupcommit", "partitioned", "optimistic", "adaptive", "named", "lettuce", "lettucepubsub", "redisson", "redissonsemaphore", "redisstock", "sharded", "allotment", "ledger", "inmemory", "journal", "offheap"})
+    public String strategy;
+
+    @Param({"1", "100"})
+    public int stockCount;
+
+    @Param({"1", "5"})
+    public long quantity;
+
+    private ConfigurableApplicationContext context;
+    private StockDecreaser stockDecreaser;
+    private Long[] stockIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("benchmark")
+                .run();
+
+        stockIds = StockFixture.create(strategy, context, stockCount, INITIAL_QUANTITY);
+        stockDecreaser = StockStrategies.get(strategy, context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        StockFixture.clear(context, stockIds);
+        context.close();
+    }
+
+    @Benchmark
+    public void decreaseStock() throws Exception {
+        Long id = stockIds[ThreadLocalRandom.current().nextInt(stockIds.length)];
+        stockDecreaser.decreaseStock(id, quantity);
+    }
+}
@@ -0,0 +1,7 @@
+package dev.practice.stock.benchmark;
+
+@FunctionalInterface
+public interface StockDecreaser {
+
+    void decreaseStock(Long id, Long quantity) throws Exception;
+}
@@ -0,0 +1,79 @@
+package dev.practice.stock.benchmark;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.domain.StockWithVersion;
+import dev.practice.stock.repository.RedisStockRepository;
+import dev.practice.stock.repository.RedissonStockSemaphoreRepository;
+import dev.practice.stock.repository.StockLedgerEntryRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.repository.StockRepositoryWithOptimisticLock;
+import dev.practice.stock.repository.StockShardRepository;
+import dev.practice.stock.repository.StockSnapshotRepository;
+import dev.practice.stock.service.StockServiceWithAllotment;
+import dev.practice.stock.service.StockServiceWithLedger;
+import dev.practice.stock.service.StockServiceWithShardedCounter;
+import org.springframework.context.ApplicationContext;
+
+public final class StockFixture {
+
+    private StockFixture() {
+    }
+
+    /**
+     * 전략이 사용하는 테이블에 재고를 stockCount 개 만든다. (StockDecreaseBenchmark, loadtest 공용)
+     *
+     * @return 만든 재고 id
+     */
+    public static Long[] create(String strategy, ApplicationContext context, int stockCount, long quantity) {
+
+        Long[] stockIds = new Long[stockCount];
+        for (int i = 0; i < stockCount; i++) {
+            stockIds[i] = StockStrategies.usesVersionedStock(strategy)
+                    ? saveStockWithVersion(context, i, quantity)
+                    : saveStock(context, i, quantity);
+
+            if (StockStrategies.usesShardedStock(strategy)) {
+                context.getBean(StockServiceWithShardedCounter.class).createShards(stockIds[i], quantity);
+            }
+
+            if (StockStrategies.usesLedgerStock(strategy)) {
+                context.getBean(StockServiceWithLedger.class).open(stockIds[i], quantity);
+            }
+        }
+        return stockIds;
+    }
+
+    // 같은 context 에서 다음 전략을 실행할 수 있도록 노드 로컬 상태도 비운다.
+    public static void clear(ApplicationContext context, Long[] stockIds) {
+
+        context.getBean(StockServiceWithAllotment.class).releaseAll();
+
+        // ddl-auto: create 로 id 가 재사용되므로 redis 에 남은 재고도 지운다.
+        for (Long id : stockIds) {
+            context.getBean(RedisStockRepository.class).delete(id);
+            context.getBean(RedissonStockSemaphoreRepository.class).delete(id);
+            context.getBean(StockServiceWithLedger.class).evictBalance(id);
+        }
+        context.getBean(StockRepository.class).deleteAllInBatch();
+        context.getBean(StockRepositoryWithOptimisticLock.class).deleteAllInBatch();
+        context.getBean(StockShardRepository.class).deleteAllInBatch();
+        context.getBean(StockLedgerEntryRepository.class).deleteAllInBatch();
+        context.getBean(StockSnapshotRepository.class).deleteAllInBatch();
+    }
+
+    private static Long saveStock(ApplicationContext context, long productId, long quantity) {
+        Stock stock = Stock.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .build();
+        return context.getBean(StockRepository.class).save(stock).getId();
+    }
+
+    private static Long saveStockWithVersion(ApplicationContext context, long productId, long quantity) {
+        StockWithVersion stockWithVersion = StockWithVersion.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .build();
+        return context.getBean(StockRepositoryWithOptimisticLock.class).save(stockWithVersion).getId();
+    }
+}
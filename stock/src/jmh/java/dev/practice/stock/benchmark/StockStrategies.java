@@ -0,0 +1,82 @@
+package dev.practice.stock.benchmark;
+
+import dev.practice.stock.facade.StockFacadeWithAdaptiveLock;
+import dev.practice.stock.facade.StockFacadeWithLettuceLock;
+import dev.practice.stock.facade.StockFacadeWithLettucePubSubLock;
+import dev.practice.stock.facade.StockFacadeWithNamedLock;
+import dev.practice.stock.facade.StockFacadeWithOptimisticLock;
+import dev.practice.stock.facade.StockFacadeWithRedisStock;
+import dev.practice.stock.facade.StockFacadeWithRedissonLock;
+import dev.practice.stock.facade.StockFacadeWithRedissonSemaphore;
+import dev.practice.stock.service.StockServiceWithAllotment;
+import dev.practice.stock.service.StockServiceWithConditionalUpdate;
+import dev.practice.stock.service.StockServiceWithGroupCommit;
+import dev.practice.stock.service.StockServiceWithInMemoryCounter;
+import dev.practice.stock.service.StockServiceWithJournal;
+import dev.practice.stock.service.StockServiceWithOffHeapTable;
+import dev.practice.stock.service.StockServiceWithKeyLock;
+import dev.practice.stock.service.StockServiceWithLedger;
+import dev.practice.stock.service.StockServiceWithPartitionedWriter;
+import dev.practice.stock.service.StockServiceWithPessimisticLock;
+import dev.practice.stock.service.StockServiceWithShardedCounter;
+import dev.practice.stock.service.StockServiceWithSynchronized;
+import org.springframework.context.ApplicationContext;
+
+public final class StockStrategies {
+
+    private StockStrategies() {
+    }
+
+    /**
+     * 벤치마크 @Param 이름으로 재고 감소 전략을 찾는다.
+     * - optimistic, adaptive 는 version 컬럼이 있는 StockWithVersion 테이블을 사용한다.
+     * - sharded 는 Stock id 별로 만든 StockShard row 들을 사용한다.
+     * - ledger 는 Stock id 별로 만든 StockSnapshot 과 StockLedgerEntry 를 사용한다.
+     */
+    public static StockDecreaser get(String strategy, ApplicationContext context) {
+        return switch (strategy) {
+            case "synchronized" -> context.getBean(StockServiceWithSynchronized.class)::decreaseStock;
+            case "keylock" -> context.getBean(StockServiceWithKeyLock.class)::decreaseStock;
+            case "pessimistic" -> context.getBean(StockServiceWithPessimisticLock.class)::decreaseStock;
+            case "conditional" -> context.getBean(StockServiceWithConditionalUpdate.class)::decreaseStock;
+            case "groupcommit" -> {
+                StockServiceWithGroupCommit service = context.getBean(StockServiceWithGroupCommit.class);
+                yield (id, quantity) -> service.decreaseStock(id, quantity).join();
+            }
+            case "partitioned" -> {
+                StockServiceWithPartitionedWriter service = context.getBean(StockServiceWithPartitionedWriter.class);
+                yield (id, quantity) -> service.decreaseStock(id, quantity).join();
+            }
+            case "optimistic" -> context.getBean(StockFacadeWithOptimisticLock.class)::decreaseStock;
+            case "adaptive" -> context.getBean(StockFacadeWithAdaptiveLock.class)::decreaseStock;
+            case "named" -> context.getBean(StockFacadeWithNamedLock.class)::decreaseStock;
+            case "lettuce" -> context.getBean(StockFacadeWithLettuceLock.class)::decreaseStock;
+            case "lettucepubsub" -> context.getBean(StockFacadeWithLettucePubSubLock.class)::decreaseStock;
+            case "redisson" -> context.getBean(StockFacadeWithRedissonLock.class)::decreaseStock;
+            case "redissonsemaphore" -> context.getBean(StockFacadeWithRedissonSemaphore.class)::decreaseStock;
+            case "redisstock" -> context.getBean(StockFacadeWithRedisStock.class)::decreaseStock;
+            case "sharded" -> context.getBean(StockServiceWithShardedCounter.class)::decreaseStock;
+            case "allotment" -> context.getBean(StockServiceWithAllotment.class)::decreaseStock;
+            case "ledger" -> context.getBean(StockServiceWithLedger.class)::decreaseStock;
+            case "inmemory" -> context.getBean(StockServiceWithInMemoryCounter.class)::decreaseStock;
+            case "offheap" -> context.getBean(StockServiceWithOffHeapTable.class)::decreaseStock;
+            case "journal" -> {
+                StockServiceWithJournal service = context.getBean(StockServiceWithJournal.class);
+                yield (id, quantity) -> service.decreaseStock(id, quantity).join();
+            }
+            default -> throw new IllegalArgumentException("알 수 없는 전략입니다. strategy = " + strategy);
+        };
+    }
+
+    public static boolean usesVersionedStock(String strategy) {
+        return "optimistic".equals(strategy) || "adaptive".equals(strategy);
+    }
+
+    public static boolean usesShardedStock(String strategy) {
+        return "sharded".equals(strategy);
+    }
+
+    public static boolean usesLedgerStock(String strategy) {
+        return "ledger".equals(strategy);
+    }
+}
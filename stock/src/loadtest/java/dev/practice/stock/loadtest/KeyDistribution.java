@@ -0,0 +1,42 @@
+package dev.practice.stock.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@FunctionalInterface
+public interface KeyDistribution {
+
+    /**
+     * @return 요청할 재고의 index (0 ~ catalogSize - 1)
+     */
+    int next(ThreadLocalRandom random);
+
+    static KeyDistribution of(LoadTestOptions options) {
+        return switch (options.distribution()) {
+            case "uniform" -> uniform(options.catalogSize());
+            case "zipf" -> new ZipfKeyDistribution(options.catalogSize(), options.zipfExponent());
+            case "hotkey" -> hotKey(options.catalogSize(), options.hotKeys(), options.hotTraffic());
+            default -> throw new IllegalArgumentException("알 수 없는 분포입니다. distribution = " + options.distribution());
+        };
+    }
+
+    static KeyDistribution uniform(int catalogSize) {
+        return random -> random.nextInt(catalogSize);
+    }
+
+    /**
+     * 앞의 hotKeys 개 재고에 hotTraffic 비율의 요청을 몰아준다. (나머지는 균등)
+     * - hotKeys = 1, hotTraffic = 0.9 이면 요청의 90% 가 한 재고로 간다. (한정 판매)
+     */
+    static KeyDistribution hotKey(int catalogSize, int hotKeys, double hotTraffic) {
+
+        if (hotKeys <= 0 || hotKeys > catalogSize)
+            throw new IllegalArgumentException("hotKeys 는 1 ~ catalogSize 사이여야 합니다.");
+
+        if (hotKeys == catalogSize)
+            return uniform(catalogSize);
+
+        return random -> random.nextDouble() < hotTraffic
+                ? random.nextInt(hotKeys)
+                : hotKeys + random.nextInt(catalogSize - hotKeys);
+    }
+}
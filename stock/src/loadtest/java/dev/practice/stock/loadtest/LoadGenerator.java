@@ -0,0 +1,202 @@
+package dev.practice.stock.loadtest;
+
+import dev.practice.stock.benchmark.StockDecreaser;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+
+    /**
+     * 재고 감소 부하 생성기
+     *
+     * open 모델 (도착률 고정)
+     * - dispatcher 스레드가 rate 에 맞춰 요청을 보낼 시각을 정하고(poisson, constant), 스레드 풀에 넘긴다.
+     * - 시스템이 느려져도 요청은 계속 도착하고 큐에서 기다린다. (한정 판매처럼 사용자가 응답을 기다려주지 않는 트래픽)
+     * - 응답 시간은 보내기로 한 시각부터 잰다. 큐 대기 시간이 빠지지 않으므로 coordinated omission 이 없다.
+     *
+     * closed 모델 (동시 요청 수 고정)
+     * - concurrency 개 스레드가 응답을 받으면 다음 요청을 보낸다.
+     * - rate 가 있으면 스레드 별로 rate / concurrency 간격에 맞춰 보내고(wrk2 방식), 응답 시간은 보냈어야 할 시각부터 잰다.
+     * - rate 가 없으면 워밍업의 평균 service time 을 기대 간격으로 보고 HdrHistogram 의 recordValueWithExpectedInterval 로 보정한다.
+     *
+     * 참고
+     * - 응답이 느려지면 closed 모델은 요청을 덜 보내서(coordinated omission) 꼬리 지연시간이 실제보다 작게 보인다.
+     * - 그래서 두 모델 모두 보정한 responseTime 과 보정하지 않은 serviceTime 을 함께 기록한다.
+     * - 재고 부족(IllegalArgumentException)은 실패가 아니라 insufficient 로 따로 센다. (품절 이후 응답도 지연시간에 포함된다.)
+     */
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private final LoadTestOptions options;
+    private final KeyDistribution keys;
+
+    public LoadGenerator(LoadTestOptions options) {
+        this.options = options;
+        this.keys = KeyDistribution.of(options);
+
+        if (options.isOpen() && options.rate() <= 0)
+            throw new IllegalArgumentException("open 모델은 loadtest.rate 가 필요합니다.");
+    }
+
+    public LoadTestResult run(String strategy, StockDecreaser decreaser, Long[] stockIds) throws InterruptedException {
+
+        Measurement warmup = measure(decreaser, stockIds, options.warmupSeconds(), 0L);
+
+        long expectedIntervalNanos = !options.isOpen() && options.rate() <= 0 ? warmup.meanServiceTimeNanos() : 0L;
+
+        return measure(decreaser, stockIds, options.durationSeconds(), expectedIntervalNanos).toResult(strategy);
+    }
+
+    private Measurement measure(StockDecreaser decreaser, Long[] stockIds, int seconds, long expectedIntervalNanos)
+            throws InterruptedException {
+
+        Measurement measurement = new Measurement(expectedIntervalNanos);
+        if (seconds <= 0)
+            return measurement;
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        if (options.isOpen()) {
+            runOpen(decreaser, stockIds, start, end, measurement);
+        } else {
+            runClosed(decreaser, stockIds, start, end, measurement);
+        }
+
+        measurement.elapsedNanos = System.nanoTime() - start;
+        return measurement;
+    }
+
+    private void runOpen(StockDecreaser decreaser, Long[] stockIds, long start, long end, Measurement measurement)
+            throws InterruptedException {
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency());
+        double meanIntervalNanos = 1_000_000_000.0 / options.rate();
+        boolean poisson = "poisson".equals(options.arrival());
+
+        try {
+            double intended = start;
+            while (intended < end) {
+                long scheduledAt = (long) intended;
+                waitUntil(scheduledAt);
+
+                workers.execute(() -> call(decreaser, stockIds, scheduledAt, measurement));
+
+                intended += poisson
+                        ? -Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos
+                        : meanIntervalNanos;
+            }
+        } finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                measurement.unfinished.add(workers.shutdownNow().size());
+            }
+        }
+    }
+
+    private void runClosed(StockDecreaser decreaser, Long[] stockIds, long start, long end, Measurement measurement)
+            throws InterruptedException {
+
+        // rate 가 없으면 0, 쉬지 않고 보낸다.
+        long intervalNanos = options.rate() > 0 ? (long) (options.concurrency() * 1_000_000_000.0 / options.rate()) : 0L;
+
+        List<Thread> workers = new ArrayList<>(options.concurrency());
+        for (int i = 0; i < options.concurrency(); i++) {
+            // 스레드 별 시작 시각을 간격 안에서 흩어 동시에 몰리지 않도록 한다.
+            long offset = intervalNanos * i / options.concurrency();
+
+            Thread worker = new Thread(() -> {
+                if (intervalNanos == 0) {
+                    while (System.nanoTime() < end) {
+                        call(decreaser, stockIds, System.nanoTime(), measurement);
+                    }
+                    return;
+                }
+
+                for (long intended = start + offset; intended < end; intended += intervalNanos) {
+                    waitUntil(intended);
+                    call(decreaser, stockIds, intended, measurement);
+                }
+            }, "loadtest-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void call(StockDecreaser decreaser, Long[] stockIds, long intendedStart, Measurement measurement) {
+
+        Long id = stockIds[keys.next(ThreadLocalRandom.current())];
+
+        long start = System.nanoTime();
+        try {
+            decreaser.decreaseStock(id, options.quantity());
+            measurement.succeeded.increment();
+        } catch (IllegalArgumentException e) {
+            measurement.insufficient.increment();
+        } catch (Exception e) {
+            measurement.failed.increment();
+        }
+        long end = System.nanoTime();
+
+        measurement.record(end - intendedStart, end - start);
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static final class Measurement {
+
+        private final long expectedIntervalNanos;
+        private final Recorder responseTime = new Recorder(3);
+        private final Recorder serviceTime = new Recorder(3);
+        private final LongAdder serviceTimeSum = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder insufficient = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder unfinished = new LongAdder();
+        private long elapsedNanos;
+
+        private Measurement(long expectedIntervalNanos) {
+            this.expectedIntervalNanos = expectedIntervalNanos;
+        }
+
+        private void record(long responseNanos, long serviceNanos) {
+            if (expectedIntervalNanos > 0) {
+                responseTime.recordValueWithExpectedInterval(responseNanos, expectedIntervalNanos);
+            } else {
+                responseTime.recordValue(responseNanos);
+            }
+            serviceTime.recordValue(serviceNanos);
+            serviceTimeSum.add(serviceNanos);
+        }
+
+        private long meanServiceTimeNanos() {
+            long count = succeeded.sum() + insufficient.sum() + failed.sum();
+            return count == 0 ? 0L : serviceTimeSum.sum() / count;
+        }
+
+        private LoadTestResult toResult(String strategy) {
+            Histogram response = responseTime.getIntervalHistogram();
+            Histogram service = serviceTime.getIntervalHistogram();
+            return new LoadTestResult(strategy, succeeded.sum(), insufficient.sum(), failed.sum(), unfinished.sum(),
+                    elapsedNanos, response, service);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dev.practice.stock.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 부하 생성 설정, 시스템 프로퍼티(gradle -P 로 전달)에서 읽는다.
+ *
+ * - loadtest.strategies : StockStrategies 전략 이름 (쉼표 구분)
+ * - loadtest.catalogSize : 재고(상품) 수
+ * - loadtest.distribution : uniform, zipf, hotkey
+ * - loadtest.zipfExponent : zipf 지수
+ * - loadtest.hotKeys, loadtest.hotTraffic : hotkey 재고 수와 그 재고들로 가는 요청 비율
+ * - loadtest.model : open (도착률 고정), closed (동시 요청 수 고정)
+ * - loadtest.rate : 초당 요청 수, open 은 필수, closed 는 0 이면 쉬지 않고 요청한다.
+ * - loadtest.arrival : poisson, constant (open 모델의 요청 간격)
+ * - loadtest.concurrency : closed 는 동시 요청 수, open 은 요청을 실행하는 스레드 수
+ * - loadtest.warmupSeconds, loadtest.durationSeconds : 워밍업, 측정 시간
+ * - loadtest.quantity : 요청 당 감소 수량
+ * - loadtest.initialQuantity : 재고 별 시작 수량 (작게 주면 품절까지 재현한다. semaphore permit 이 int 이므로 기본값은 Integer.MAX_VALUE)
+ */
+public record LoadTestOptions(List<String> strategies,
+                              int catalogSize,
+                              String distribution,
+                              double zipfExponent,
+                              int hotKeys,
+                              double hotTraffic,
+                              String model,
+                              double rate,
+                              String arrival,
+                              int concurrency,
+                              int warmupSeconds,
+                              int durationSeconds,
+                              long quantity,
+                              long initialQuantity,
+                              String resultDir) {
+
+    public static LoadTestOptions fromSystemProperties() {
+        return new LoadTestOptions(
+                Arrays.stream(property("strategies", "pessimistic").split(","))
+                        .map(String::trim)
+                        .filter(strategy -> !strategy.isEmpty())
+                        .toList(),
+                Integer.parseInt(property("catalogSize", "1000")),
+                property("distribution", "zipf"),
+                Double.parseDouble(property("zipfExponent", "0.99")),
+                Integer.parseInt(property("hotKeys", "1")),
+                Double.parseDouble(property("hotTraffic", "0.9")),
+                property("model", "closed"),
+                Double.parseDouble(property("rate", "0")),
+                property("arrival", "poisson"),
+                Integer.parseInt(property("concurrency", "32")),
+                Integer.parseInt(property("warmupSeconds", "5")),
+                Integer.parseInt(property("durationSeconds", "30")),
+                Long.parseLong(property("quantity", "1")),
+                Long.parseLong(property("initialQuantity", String.valueOf(Integer.MAX_VALUE))),
+                property("resultDir", "build/reports/loadtest"));
+    }
+
+    public boolean isOpen() {
+        return "open".equals(model);
+    }
+
+    public String describe() {
+        String keys = switch (distribution) {
+            case "zipf" -> "zipf(" + zipfExponent + ")";
+            case "hotkey" -> "hotkey(" + hotKeys + " keys, " + hotTraffic + ")";
+            default -> distribution;
+        };
+        String load = isOpen()
+                ? "open(" + arrival + ", " + rate + "/s, threads=" + concurrency + ")"
+                : "closed(concurrency=" + concurrency + (rate > 0 ? ", " + rate + "/s" : "") + ")";
+        return "catalog=" + catalogSize + ", keys=" + keys + ", load=" + load
+                + ", duration=" + durationSeconds + "s, warmup=" + warmupSeconds + "s"
+                + ", quantity=" + quantity + ", initialQuantity=" + initialQuantity;
+    }
+
+    private static String property(String name, String defaultValue) {
+        String value = System.getProperty("loadtest." + name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
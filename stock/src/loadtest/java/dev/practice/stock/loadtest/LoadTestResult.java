@@ -0,0 +1,28 @@
+package dev.practice.stock.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * 전략 하나의 측정 결과
+ *
+ * - responseTime : 요청이 보내졌어야 할 시각부터 응답까지 (coordinated omission 보정)
+ * - serviceTime : 실제로 호출한 시각부터 응답까지
+ * - 히스토그램 값의 단위는 nanoseconds 다.
+ */
+public record LoadTestResult(String strategy,
+                             long succeeded,
+                             long insufficient,
+                             long failed,
+                             long unfinished,
+                             long elapsedNanos,
+                             Histogram responseTime,
+                             Histogram serviceTime) {
+
+    public long completed() {
+        return succeeded + insufficient + failed;
+    }
+
+    public double throughput() {
+        return elapsedNanos == 0 ? 0.0 : completed() * 1_000_000_000.0 / elapsedNanos;
+    }
+}
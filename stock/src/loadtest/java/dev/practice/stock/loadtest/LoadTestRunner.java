@@ -0,0 +1,101 @@
+package dev.practice.stock.loadtest;
+
+import dev.practice.stock.StockApplication;
+import dev.practice.stock.benchmark.StockFixture;
+import dev.practice.stock.benchmark.StockStrategies;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadTestRunner {
+
+    /**
+     * 전략 별로 같은 부하를 주고 지연시간 백분위 표를 출력한다.
+     *
+     * - StockDecreaseBenchmark 는 재고를 균등하게 고르고 처리량 위주로 보지만, 여기서는 인기 상품 쏠림(zipf, hotkey)과
+     * - 도착률 고정(open) 부하로 한정 판매 때의 꼬리 지연시간을 재현한다.
+     * - 하나의 context 에서 전략 마다 재고를 새로 만들고, 끝나면 지운다.
+     * - 전략 별 HdrHistogram 백분위 분포(.hgrm)를 loadtest.resultDir 에 남긴다. (HdrHistogram plotter 로 비교)
+     *
+     * 참고
+     * - local MySQL(localhost:3306), Redis(localhost:6379) 가 떠 있어야 한다.
+     * - 설정은 LoadTestOptions 참고
+     */
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+    public static void main(String[] args) throws Exception {
+
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        LoadGenerator generator = new LoadGenerator(options);
+
+        File resultDir = new File(options.resultDir());
+        resultDir.mkdirs();
+
+        List<LoadTestResult> results = new ArrayList<>();
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("loadtest")
+                .run()) {
+
+            for (String strategy : options.strategies()) {
+                Long[] stockIds = StockFixture.create(strategy, context, options.catalogSize(), options.initialQuantity());
+                try {
+                    LoadTestResult result = generator.run(strategy, StockStrategies.get(strategy, context), stockIds);
+                    results.add(result);
+                    writeDistribution(new File(resultDir, strategy + "-response.hgrm"), result.responseTime());
+                    writeDistribution(new File(resultDir, strategy + "-service.hgrm"), result.serviceTime());
+                } finally {
+                    StockFixture.clear(context, stockIds);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println(options.describe());
+        printTable("response time (ms, coordinated omission corrected)", results, true);
+        printTable("service time (ms)", results, false);
+    }
+
+    private static void printTable(String title, List<LoadTestResult> results, boolean response) {
+
+        System.out.println();
+        System.out.println(title);
+
+        StringBuilder header = new StringBuilder(String.format("%-14s %10s %10s %12s %8s %10s",
+                "strategy", "ops/s", "ok", "insufficient", "failed", "unfinished"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + percentile));
+        }
+        header.append(String.format(" %9s", "max"));
+        System.out.println(header);
+
+        for (LoadTestResult result : results) {
+            Histogram histogram = response ? result.responseTime() : result.serviceTime();
+
+            StringBuilder row = new StringBuilder(String.format("%-14s %10.1f %10d %12d %8d %10d",
+                    result.strategy(), result.throughput(), result.succeeded(), result.insufficient(),
+                    result.failed(), result.unfinished()));
+            for (double percentile : PERCENTILES) {
+                row.append(String.format(" %9.2f", histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI));
+            }
+            row.append(String.format(" %9.2f", histogram.getMaxValue() / NANOS_PER_MILLI));
+            System.out.println(row);
+        }
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package dev.practice.stock.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ZipfKeyDistribution implements KeyDistribution {
+
+    /**
+     * Zipf 분포, rank k (1 부터) 의 확률이 1 / k^exponent 에 비례한다.
+     *
+     * - 누적 확률(cdf)을 미리 계산해두고, 난수로 이분 탐색한다. (요청 당 O(log n), 할당 없음)
+     * - exponent 가 0 이면 균등 분포, 1 근처(0.99, YCSB 기본값)면 소수의 인기 상품에 요청이 몰린다.
+     * - index 0 이 가장 인기 있는 재고다.
+     */
+
+    private final double[] cdf;
+
+    public ZipfKeyDistribution(int catalogSize, double exponent) {
+
+        if (catalogSize <= 0)
+            throw new IllegalArgumentException("catalogSize 는 1 이상이어야 합니다.");
+
+        cdf = new double[catalogSize];
+
+        double sum = 0.0;
+        for (int i = 0; i < catalogSize; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < catalogSize; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    @Override
+    public int next(ThreadLocalRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        // 정확히 일치하지 않으면 (-(삽입 위치) - 1) 이 반환된다.
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
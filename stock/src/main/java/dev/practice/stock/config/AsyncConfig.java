@@ -0,0 +1,26 @@
+package dev.practice.stock.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * 락 대기, DB 처리 등 오래 걸릴 수 있는 재고 작업을 수행하는 스레드 풀
+     * - tomcat 요청 스레드는 작업을 넘기고 바로 반환된다. (적은 수의 요청 스레드로 많은 대기 요청을 받을 수 있다.)
+     * - queue 가 가득 차면 TaskRejectedException 이 발생한다. (503 응답, backpressure)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor stockTaskExecutor(@Value("${stock.async.pool-size:64}") int poolSize,
+                                                    @Value("${stock.async.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stock-task-");
+        return executor;
+    }
+}
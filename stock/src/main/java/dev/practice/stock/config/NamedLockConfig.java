@@ -0,0 +1,31 @@
+package dev.practice.stock.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.practice.stock.repository.NamedLockExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class NamedLockConfig {
+
+    /**
+     * 네임드 락 전용 커넥션 풀
+     * - 접속 정보는 spring.datasource 와 같고, 풀만 분리한다.
+     * - DataSource 타입으로 빈 등록을 하면 spring boot 의 기본 DataSource 자동 설정이 꺼지므로 NamedLockExecutor 안에만 둔다.
+     */
+    @Bean(destroyMethod = "close")
+    public NamedLockExecutor namedLockExecutor(DataSourceProperties dataSourceProperties,
+                                               @Value("${stock.named-lock.pool-size:20}") int poolSize,
+                                               @Value("${stock.named-lock.timeout-seconds:3}") int timeoutSeconds) {
+
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("named-lock-pool");
+        dataSource.setMaximumPoolSize(poolSize);
+
+        return new NamedLockExecutor(dataSource, timeoutSeconds);
+    }
+}
@@ -0,0 +1,26 @@
+package dev.practice.stock.config;
+
+import dev.practice.stock.repository.RedisLockReleaseSubscriber;
+import dev.practice.stock.repository.RedisLockRepository;
+import dev.practice.stock.repository.StockInvalidationSubscriber;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       RedisLockReleaseSubscriber redisLockReleaseSubscriber,
+                                                                       StockInvalidationSubscriber stockInvalidationSubscriber) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(redisLockReleaseSubscriber, new PatternTopic(RedisLockRepository.RELEASE_CHANNEL_PATTERN));
+        container.addMessageListener(stockInvalidationSubscriber, new ChannelTopic(StockInvalidationSubscriber.INVALIDATE_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,4 @@
+package dev.practice.stock.controller;
+
+public record ErrorResponse(String message) {
+}
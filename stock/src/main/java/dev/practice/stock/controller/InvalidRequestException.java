@@ -0,0 +1,13 @@
+package dev.practice.stock.controller;
+
+/**
+ * 요청 값이 잘못된 경우 (ex. 수량이 0 이하, 빈 주문)
+ * - facade 로 넘기기 전에 controller 에서 던지고, StockControllerAdvice 가 400 으로 응답한다.
+ * - IllegalArgumentException 은 재고 부족(409)으로 쓰고 있으므로 따로 구분한다.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
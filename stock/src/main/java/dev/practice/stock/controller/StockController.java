@@ -0,0 +1,96 @@
+package dev.practice.stock.controller;
+
+import dev.practice.stock.facade.StockAsyncFacade;
+import dev.practice.stock.facade.StockStrategy;
+import dev.practice.stock.service.StockDecreaseCommand;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/stocks")
+@RequiredArgsConstructor
+public class StockController {
+
+    /**
+     * 모든 handler 는 CompletableFuture 를 반환한다.
+     * - spring mvc 는 CompletableFuture 를 반환하면 요청을 비동기 모드로 전환하고, tomcat 요청 스레드를 바로 반납한다.
+     * - future 가 완료되면 그때 응답을 쓴다. (예외로 완료되면 StockControllerAdvice 가 처리)
+     * - 요청 스레드만 반납할 뿐, 작업 자체는 stockTaskExecutor 스레드에서 blocking 으로 처리한다. (StockAsyncFacade 참고)
+     * - 락 획득 실패(timeout)는 503 으로 응답한다.
+     * - 수량이 0 이하이거나 빈 주문은 facade 로 넘기기 전에 400 으로 응답한다.
+     *
+     * ex) POST /stocks/1/decrease?quantity=1&strategy=REDISSON
+     *     POST /stocks/decrease?strategy=PESSIMISTIC  [{"id":1,"quantity":2},{"id":2,"quantity":1}]
+     *     GET  /stocks/1?strategy=REDIS_STOCK
+     *     GET  /stocks/1?maxStalenessMillis=500 (near-cache, 500ms 이내의 값이면 캐시에서 읽는다.)
+     *     POST /stocks/1/reservations?quantity=1 -> POST /stocks/reservations/{reservationId}/confirm or cancel
+     */
+
+    private final StockAsyncFacade stockAsyncFacade;
+
+    @PostMapping("/{id}/decrease")
+    public CompletableFuture<ResponseEntity<Void>> decreaseStock(@PathVariable Long id,
+                                                                 @RequestParam Long quantity,
+                                                                 @RequestParam(defaultValue = "PESSIMISTIC") StockStrategy strategy) {
+        validateQuantity(quantity);
+        return stockAsyncFacade.decreaseStock(strategy, id, quantity)
+                .thenApply(result -> ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/decrease")
+    public CompletableFuture<ResponseEntity<Void>> decreaseStocks(@RequestBody List<StockDecreaseCommand> commands,
+                                                                  @RequestParam(defaultValue = "PESSIMISTIC") StockStrategy strategy) {
+        validateCommands(commands);
+        return stockAsyncFacade.decreaseStocks(strategy, commands)
+                .thenApply(result -> ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/{id}/reservations")
+    public CompletableFuture<ReservationResponse> reserve(@PathVariable Long id,
+                                                          @RequestParam Long quantity) {
+        validateQuantity(quantity);
+        return stockAsyncFacade.reserve(id, quantity)
+                .thenApply(ReservationResponse::new);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public CompletableFuture<ResponseEntity<Void>> confirmReservation(@PathVariable Long reservationId) {
+        return stockAsyncFacade.confirmReservation(reservationId)
+                .thenApply(result -> ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/reservations/{reservationId}/cancel")
+    public CompletableFuture<ResponseEntity<Void>> cancelReservation(@PathVariable Long reservationId) {
+        return stockAsyncFacade.cancelReservation(reservationId)
+                .thenApply(result -> ResponseEntity.ok().build());
+    }
+
+    @GetMapping("/{id}")
+    public CompletableFuture<StockResponse> getStock(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "PESSIMISTIC") StockStrategy strategy,
+                                                     @RequestParam(required = false) Long maxStalenessMillis) {
+        return stockAsyncFacade.getQuantity(strategy, id, maxStalenessMillis)
+                .thenApply(quantity -> new StockResponse(id, quantity));
+    }
+
+    private void validateQuantity(Long quantity) {
+        if (quantity == null || quantity <= 0)
+            throw new InvalidRequestException("수량은 1 이상이어야 합니다.");
+    }
+
+    // 빈 주문은 redisson multi lock 등에서 락 없이 실패하므로 미리 거른다.
+    private void validateCommands(List<StockDecreaseCommand> commands) {
+        if (commands == null || commands.isEmpty())
+            throw new InvalidRequestException("주문이 비어있습니다.");
+
+        for (StockDecreaseCommand command : commands) {
+            if (command == null || command.id() == null)
+                throw new InvalidRequestException("재고 id 가 없습니다.");
+            validateQuantity(command.quantity());
+        }
+    }
+}
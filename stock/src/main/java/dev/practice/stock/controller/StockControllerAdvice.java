@@ -0,0 +1,47 @@
+package dev.practice.stock.controller;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.NoSuchElementException;
+
+@RestControllerAdvice
+public class StockControllerAdvice {
+
+    // 재고 부족
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleNotEnough(IllegalArgumentException e) {
+        return error(HttpStatus.CONFLICT, e);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<ErrorResponse> handleNotFound(NoSuchElementException e) {
+        return error(HttpStatus.NOT_FOUND, e);
+    }
+
+    // 잘못된 요청 값
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalid(InvalidRequestException e) {
+        return error(HttpStatus.BAD_REQUEST, e);
+    }
+
+    // 해당 전략이 지원하지 않는 요청
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupported(UnsupportedOperationException e) {
+        return error(HttpStatus.BAD_REQUEST, e);
+    }
+
+    // 락 획득 실패, 낙관적 락 재시도 초과, 작업 큐 가득 참
+    @ExceptionHandler({IllegalStateException.class, OptimisticLockingFailureException.class, TaskRejectedException.class})
+    public ResponseEntity<ErrorResponse> handleUnavailable(RuntimeException e) {
+        return error(HttpStatus.SERVICE_UNAVAILABLE, e);
+    }
+
+    private ResponseEntity<ErrorResponse> error(HttpStatus status, Exception e) {
+        return ResponseEntity.status(status).body(new ErrorResponse(e.getMessage()));
+    }
+}
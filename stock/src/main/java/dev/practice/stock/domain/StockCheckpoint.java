@@ -0,0 +1,30 @@
+package dev.practice.stock.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Entity
+@NoArgsConstructor(access = lombok.AccessLevel.PROTECTED)
+public class StockCheckpoint {
+
+    /**
+     * 메모리/파일에서 관리하는 재고가 DB 의 어디까지 반영되었는지 기록한다. (ex. journal 의 sequence)
+     * - 재고 수량을 반영하는 트랜잭션 안에서 같이 갱신하므로, 수량과 checkpoint 가 항상 같이 commit 된다.
+     * - name 은 파일 경로처럼 노드마다 다른 값을 쓴다.
+     * - off-heap stock table 은 sequence 에 파일의 epoch 를 둔다. (파일을 이 DB 에서 만들었는지 확인)
+     * - DB 를 새로 만들면(ddl-auto: create) row 도 없어지므로, 파일에 남은 이전 DB 의 기록을 쓰지 않는다.
+     */
+
+    @Id
+    private String name;
+
+    private Long sequence;
+
+    public StockCheckpoint(String name, Long sequence) {
+        this.name = name;
+        this.sequence = sequence;
+    }
+}
@@ -0,0 +1,37 @@
+package dev.practice.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Entity
+@Table(indexes = @Index(columnList = "stock_id, id"))
+@NoArgsConstructor(access = lombok.AccessLevel.PROTECTED)
+public class StockLedgerEntry {
+
+    /**
+     * 재고 변경 이력 (insert 만 한다.)
+     * - 감소는 음수, 입고는 양수 delta 이다.
+     * - 재고 수량 = StockSnapshot.quantity + snapshot 이후(id > lastEntryId) entry 들의 delta 합
+     */
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // indexes 는 컬럼 이름으로 찾으므로 이름을 명시한다.
+    @Column(name = "stock_id")
+    private Long stockId;
+
+    private Long delta;
+    private Long createdAt;
+
+    @Builder
+    public StockLedgerEntry(Long stockId, Long delta) {
+        this.stockId = stockId;
+        this.delta = delta;
+        this.createdAt = System.currentTimeMillis();
+    }
+}
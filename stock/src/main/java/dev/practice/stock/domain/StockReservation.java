@@ -0,0 +1,65 @@
+package dev.practice.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Entity
+@Table(indexes = @Index(columnList = "status, id"))
+@NoArgsConstructor(access = lombok.AccessLevel.PROTECTED)
+public class StockReservation {
+
+    /**
+     * 결제가 진행되는 동안 잡아둔 재고
+     * - 예약할 때 Stock.quantity 에서 감소시키고, 취소/만료되면 반환한다.
+     * - RESERVED 상태에서만 다른 상태로 바뀔 수 있다.
+     * - 애플리케이션이 재시작되면 RESERVED 인 예약의 만료를 다시 예약한다. (StockReservationService.recover)
+     */
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long stockId;
+    private Long quantity;
+
+    @Enumerated(EnumType.STRING)
+    private StockReservationStatus status;
+
+    // epoch millis
+    private Long expiresAt;
+
+    @Builder
+    public StockReservation(Long stockId, Long quantity, Long expiresAt) {
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.status = StockReservationStatus.RESERVED;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    public void confirm() {
+        changeStatus(StockReservationStatus.CONFIRMED);
+    }
+
+    public void cancel() {
+        changeStatus(StockReservationStatus.CANCELLED);
+    }
+
+    public void expire() {
+        changeStatus(StockReservationStatus.EXPIRED);
+    }
+
+    private void changeStatus(StockReservationStatus status) {
+
+        if (this.status != StockReservationStatus.RESERVED)
+            throw new IllegalArgumentException("이미 처리된 예약입니다. status = " + this.status);
+
+        this.status = status;
+    }
+}
@@ -0,0 +1,9 @@
+package dev.practice.stock.domain;
+
+public enum StockReservationStatus {
+
+    RESERVED,   // 재고를 잡아둔 상태 (Stock.quantity 에서 이미 감소)
+    CONFIRMED,  // 결제 완료, 재고 차감 확정
+    CANCELLED,  // 주문 취소, 재고 반환
+    EXPIRED     // ttl 만료, 재고 반환
+}
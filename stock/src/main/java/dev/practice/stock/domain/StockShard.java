@@ -0,0 +1,51 @@
+package dev.practice.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"stock_id", "shard_no"}))
+@NoArgsConstructor(access = lombok.AccessLevel.PROTECTED)
+public class StockShard {
+
+    /**
+     * 하나의 재고(Stock) 수량을 여러 row 로 나눠 담은 것
+     * - 재고 수량 = 같은 stockId 를 가진 shard 들의 quantity 합
+     * - 감소할 때 하나의 shard row 만 잠그므로, 서로 다른 shard 를 고른 요청끼리는 대기하지 않는다.
+     */
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // uniqueConstraints 는 컬럼 이름으로 찾으므로 이름을 명시한다.
+    @Column(name = "stock_id")
+    private Long stockId;
+
+    @Column(name = "shard_no")
+    private Integer shardNo;
+
+    private Long quantity;
+
+    @Builder
+    public StockShard(Long stockId, Integer shardNo, Long quantity) {
+        this.stockId = stockId;
+        this.shardNo = shardNo;
+        this.quantity = quantity;
+    }
+
+    public void decrease(Long quantity) {
+
+        if(this.quantity - quantity < 0)
+            throw new IllegalArgumentException("재고가 부족합니다.");
+
+        this.quantity -= quantity;
+    }
+
+    public void changeQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+}
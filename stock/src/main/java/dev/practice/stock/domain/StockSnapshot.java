@@ -0,0 +1,36 @@
+package dev.practice.stock.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Entity
+@NoArgsConstructor(access = lombok.AccessLevel.PROTECTED)
+public class StockSnapshot {
+
+    /**
+     * lastEntryId 까지의 StockLedgerEntry 를 반영한 재고 수량
+     * - compactor 가 주기적으로 이후 entry 들을 더해서 앞으로 옮긴다. (rollForward)
+     */
+
+    @Id
+    private Long stockId;
+
+    private Long quantity;
+    private Long lastEntryId;
+
+    @Builder
+    public StockSnapshot(Long stockId, Long quantity) {
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.lastEntryId = 0L;
+    }
+
+    public void rollForward(Long delta, Long lastEntryId) {
+        this.quantity += delta;
+        this.lastEntryId = lastEntryId;
+    }
+}
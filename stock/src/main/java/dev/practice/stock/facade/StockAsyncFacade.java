@@ -0,0 +1,174 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.domain.StockWithVersion;
+import dev.practice.stock.repository.RedisStockRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.repository.StockRepositoryWithOptimisticLock;
+import dev.practice.stock.service.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+@Service
+@RequiredArgsConstructor
+public class StockAsyncFacade {
+
+    /**
+     * 전략을 골라서 재고를 감소/조회하고, 결과를 CompletableFuture 로 돌려준다.
+     *
+     * - 락 대기(redisson tryLock 최대 5초, lettuce 스핀락, 낙관적 락 재시도)는 stockTaskExecutor 스레드에서 한다.
+     * - 호출한 스레드(ex. tomcat 요청 스레드)는 기다리지 않고 바로 반환된다.
+     * - non-blocking 구현이 아니다. blocking 호출(락 대기, JDBC)을 stockTaskExecutor 스레드로 옮길(offload) 뿐이다.
+     * - - 락을 기다리는 요청마다 stockTaskExecutor 스레드 하나를 점유하므로, 동시에 처리할 수 있는 요청 수는 pool size 로 제한된다.
+     * - - 나머지는 queue 에서 기다리고, queue 가 가득 차면 TaskRejectedException(503) 이 발생한다.
+     * - GROUP_COMMIT, PARTITIONED, JOURNAL 은 원래 CompletableFuture 를 반환하므로 executor 를 거치지 않는다.
+     */
+
+    private final StockServiceWithSynchronized stockServiceWithSynchronized;
+    private final StockServiceWithKeyLock stockServiceWithKeyLock;
+    private final StockServiceWithPessimisticLock stockServiceWithPessimisticLock;
+    private final StockServiceWithConditionalUpdate stockServiceWithConditionalUpdate;
+    private final StockServiceWithGroupCommit stockServiceWithGroupCommit;
+    private final StockServiceWithPartitionedWriter stockServiceWithPartitionedWriter;
+    private final StockFacadeWithOptimisticLock stockFacadeWithOptimisticLock;
+    private final StockFacadeWithAdaptiveLock stockFacadeWithAdaptiveLock;
+    private final StockFacadeWithNamedLock stockFacadeWithNamedLock;
+    private final StockFacadeWithLettuceLock stockFacadeWithLettuceLock;
+    private final StockFacadeWithLettucePubSubLock stockFacadeWithLettucePubSubLock;
+    private final StockFacadeWithRedissonLock stockFacadeWithRedissonLock;
+    private final StockFacadeWithRedissonSemaphore stockFacadeWithRedissonSemaphore;
+    private final StockFacadeWithRedisStock stockFacadeWithRedisStock;
+    private final StockServiceWithShardedCounter stockServiceWithShardedCounter;
+    private final StockServiceWithAllotment stockServiceWithAllotment;
+    private final StockServiceWithLedger stockServiceWithLedger;
+    private final StockServiceWithInMemoryCounter stockServiceWithInMemoryCounter;
+    // journal 은 파일을 열고 lock 을 잡으므로 JOURNAL 전략을 처음 사용할 때 만든다. (@Lazy)
+    private final ObjectProvider<StockServiceWithJournal> stockServiceWithJournal;
+    // stock table 도 파일을 열고 lock 을 잡으므로 OFF_HEAP 전략을 처음 사용할 때 만든다. (@Lazy)
+    private final ObjectProvider<StockServiceWithOffHeapTable> stockServiceWithOffHeapTable;
+    private final StockReadService stockReadService;
+    private final StockReservationService stockReservationService;
+
+    private final StockRepository stockRepository;
+    private final StockRepositoryWithOptimisticLock stockRepositoryWithOptimisticLock;
+    private final RedisStockRepository redisStockRepository;
+
+    // AsyncConfig.stockTaskExecutor
+    private final Executor stockTaskExecutor;
+
+    public CompletableFuture<Void> decreaseStock(StockStrategy strategy, Long id, Long quantity) {
+
+        if (strategy == StockStrategy.GROUP_COMMIT)
+            return stockServiceWithGroupCommit.decreaseStock(id, quantity);
+
+        if (strategy == StockStrategy.PARTITIONED)
+            return stockServiceWithPartitionedWriter.decreaseStock(id, quantity);
+
+        if (strategy == StockStrategy.JOURNAL)
+            return stockServiceWithJournal.getObject().decreaseStock(id, quantity);
+
+        return CompletableFuture.runAsync(() -> {
+            switch (strategy) {
+                case SYNCHRONIZED -> stockServiceWithSynchronized.decreaseStock(id, quantity);
+                case KEY_LOCK -> stockServiceWithKeyLock.decreaseStock(id, quantity);
+                case PESSIMISTIC -> stockServiceWithPessimisticLock.decreaseStock(id, quantity);
+                case CONDITIONAL -> stockServiceWithConditionalUpdate.decreaseStock(id, quantity);
+                case OPTIMISTIC -> decreaseStockWithOptimisticLock(id, quantity);
+                case ADAPTIVE -> decreaseStockWithAdaptiveLock(id, quantity);
+                case NAMED_LOCK -> stockFacadeWithNamedLock.decreaseStock(id, quantity);
+                case LETTUCE -> stockFacadeWithLettuceLock.decreaseStock(id, quantity);
+                case LETTUCE_PUBSUB -> stockFacadeWithLettucePubSubLock.decreaseStock(id, quantity);
+                case REDISSON -> stockFacadeWithRedissonLock.decreaseStock(id, quantity);
+                case REDISSON_SEMAPHORE -> stockFacadeWithRedissonSemaphore.decreaseStock(id, quantity);
+                case REDIS_STOCK -> stockFacadeWithRedisStock.decreaseStock(id, quantity);
+                case SHARDED -> stockServiceWithShardedCounter.decreaseStock(id, quantity);
+                case ALLOTMENT -> stockServiceWithAllotment.decreaseStock(id, quantity);
+                case LEDGER -> stockServiceWithLedger.decreaseStock(id, quantity);
+                case IN_MEMORY -> stockServiceWithInMemoryCounter.decreaseStock(id, quantity);
+                case OFF_HEAP -> stockServiceWithOffHeapTable.getObject().decreaseStock(id, quantity);
+                default -> throw new UnsupportedOperationException("지원하지 않는 전략입니다. strategy = " + strategy);
+            }
+        }, stockTaskExecutor);
+    }
+
+    public CompletableFuture<Void> decreaseStocks(StockStrategy strategy, List<StockDecreaseCommand> commands) {
+
+        if (!strategy.supportsBatch())
+            return CompletableFuture.failedFuture(
+                    new UnsupportedOperationException("여러 재고 감소를 지원하지 않는 전략입니다. strategy = " + strategy));
+
+        return CompletableFuture.runAsync(() -> {
+            switch (strategy) {
+                case PESSIMISTIC -> stockServiceWithPessimisticLock.decreaseStocks(commands);
+                case NAMED_LOCK -> stockFacadeWithNamedLock.decreaseStocks(commands);
+                case LETTUCE -> stockFacadeWithLettuceLock.decreaseStocks(commands);
+                case REDISSON -> stockFacadeWithRedissonLock.decreaseStocks(commands);
+                default -> throw new UnsupportedOperationException("여러 재고 감소를 지원하지 않는 전략입니다. strategy = " + strategy);
+            }
+        }, stockTaskExecutor);
+    }
+
+    public CompletableFuture<Long> getQuantity(StockStrategy strategy, Long id) {
+        return getQuantity(strategy, id, null);
+    }
+
+    /**
+     * 전략마다 재고 수량을 보관하는 곳이 다르다.
+     * - OPTIMISTIC, ADAPTIVE : StockWithVersion, REDIS_STOCK, REDISSON_SEMAPHORE : redis (없으면 DB), SHARDED : shard 합계, LEDGER : snapshot + ledger 합계, IN_MEMORY, JOURNAL : counter table (없으면 DB), OFF_HEAP : mapped 파일 (없으면 DB), 나머지 : Stock
+     * - Stock 은 maxStalenessMillis 가 있으면 near-cache(StockReadService) 에서, 없으면 DB 에서 읽는다.
+     */
+    public CompletableFuture<Long> getQuantity(StockStrategy strategy, Long id, Long maxStalenessMillis) {
+        return CompletableFuture.supplyAsync(() -> switch (strategy) {
+            case OPTIMISTIC, ADAPTIVE -> stockRepositoryWithOptimisticLock.findById(id).map(StockWithVersion::getQuantity).orElseThrow();
+            case REDIS_STOCK -> {
+                Long quantity = redisStockRepository.getQuantity(id);
+                yield quantity != null ? quantity : stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+            }
+            case REDISSON_SEMAPHORE -> stockFacadeWithRedissonSemaphore.getQuantity(id);
+            case SHARDED -> stockServiceWithShardedCounter.getQuantity(id);
+            case LEDGER -> stockServiceWithLedger.getQuantity(id);
+            case IN_MEMORY -> stockServiceWithInMemoryCounter.getQuantity(id);
+            case JOURNAL -> stockServiceWithJournal.getObject().getQuantity(id);
+            case OFF_HEAP -> stockServiceWithOffHeapTable.getObject().getQuantity(id);
+            default -> maxStalenessMillis != null
+                    ? stockReadService.getQuantity(id, maxStalenessMillis)
+                    : stockReadService.getQuantityAuthoritative(id);
+        }, stockTaskExecutor);
+    }
+
+    public CompletableFuture<Long> reserve(Long id, Long quantity) {
+        return CompletableFuture.supplyAsync(() -> stockReservationService.reserve(id, quantity), stockTaskExecutor);
+    }
+
+    public CompletableFuture<Void> confirmReservation(Long reservationId) {
+        return CompletableFuture.runAsync(() -> stockReservationService.confirm(reservationId), stockTaskExecutor);
+    }
+
+    public CompletableFuture<Void> cancelReservation(Long reservationId) {
+        return CompletableFuture.runAsync(() -> stockReservationService.cancel(reservationId), stockTaskExecutor);
+    }
+
+    private void decreaseStockWithOptimisticLock(Long id, Long quantity) {
+        try {
+            stockFacadeWithOptimisticLock.decreaseStock(id, quantity);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void decreaseStockWithAdaptiveLock(Long id, Long quantity) {
+        try {
+            stockFacadeWithAdaptiveLock.decreaseStock(id, quantity);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.service.StockServiceWithAdaptiveLock;
+import dev.practice.stock.support.ConflictRateTracker;
+import dev.practice.stock.support.RetryPolicy;
+import dev.practice.stock.support.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class StockFacadeWithAdaptiveLock {
+
+    private static final String STRATEGY = "adaptive";
+
+    private final StockServiceWithAdaptiveLock stockServiceWithAdaptiveLock;
+    private final StockMetrics stockMetrics;
+    private final RetryPolicy retryPolicy;
+    private final ConflictRateTracker<Long> conflictRateTracker;
+
+    public StockFacadeWithAdaptiveLock(StockServiceWithAdaptiveLock stockServiceWithAdaptiveLock,
+                                       StockMetrics stockMetrics,
+                                       @Value("${stock.adaptive-lock.window-millis:10000}") long windowMillis,
+                                       @Value("${stock.adaptive-lock.buckets:10}") int buckets,
+                                       @Value("${stock.adaptive-lock.min-samples:20}") int minSamples,
+                                       @Value("${stock.adaptive-lock.enter-threshold:0.2}") double enterThreshold,
+                                       @Value("${stock.adaptive-lock.exit-threshold:0.05}") double exitThreshold,
+                                       @Value("${stock.optimistic-lock.retry.max-attempts:100}") int maxAttempts,
+                                       @Value("${stock.optimistic-lock.retry.base-delay-millis:10}") long baseDelayMillis,
+                                       @Value("${stock.optimistic-lock.retry.max-delay-millis:200}") long maxDelayMillis,
+                                       @Value("${stock.optimistic-lock.retry.deadline-millis:10000}") long deadlineMillis) {
+        this.stockServiceWithAdaptiveLock = stockServiceWithAdaptiveLock;
+        this.stockMetrics = stockMetrics;
+        this.retryPolicy = new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, deadlineMillis);
+        this.conflictRateTracker = new ConflictRateTracker<>(windowMillis, buckets, minSamples, enterThreshold, exitThreshold);
+    }
+
+    /**
+     * 재고 id 별로 낙관적 락과 비관적 락 중 하나를 골라서 감소시킨다.
+     *
+     * - 충돌이 적을 때는 낙관적 락이, 많을 때는 비관적 락이 빠르다. (StockServiceWithOptimisticLock, StockServiceWithPessimisticLock 참고)
+     * - 같은 재고도 시간대에 따라 경합이 바뀌므로, 재고 id 별 최근 충돌률(ConflictRateTracker)을 보고 고른다.
+     * - 낙관적 락으로 시도하다가 충돌이 많아지면 다음 시도부터 비관적 락으로 바뀐다.
+     * - 재시도 정책은 StockFacadeWithOptimisticLock 과 같다.
+     */
+    public void decreaseStock(Long id, Long quantity) throws InterruptedException {
+
+        boolean contended = conflictRateTracker.enter(id);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryPolicy.getDeadlineMillis());
+            long delayMillis = retryPolicy.getBaseDelayMillis();
+
+            for (int attempt = 1; ; attempt++) {
+
+                if (conflictRateTracker.isPessimistic(id)) {
+                    stockServiceWithAdaptiveLock.decreaseStockWithPessimisticLock(id, quantity);
+                    conflictRateTracker.record(id, contended);
+                    stockMetrics.recordRetries(STRATEGY, id, attempt - 1);
+                    return;
+                }
+
+                try {
+                    stockServiceWithAdaptiveLock.decreaseStockWithOptimisticLock(id, quantity);
+                    conflictRateTracker.record(id, false);
+                    stockMetrics.recordRetries(STRATEGY, id, attempt - 1);
+                    return;
+                } catch (OptimisticLockingFailureException e) {
+                    conflictRateTracker.record(id, true);
+                    delayMillis = retryPolicy.nextDelayMillis(delayMillis);
+
+                    if (!retryPolicy.canRetry(attempt, delayMillis, deadline)) {
+                        stockMetrics.incrementLockFailure(STRATEGY, id);
+                        throw e;
+                    }
+
+                    // 비관적 모드로 바뀌었으면 기다리지 않고 바로 락을 잡는다.
+                    if (!conflictRateTracker.isPessimistic(id)) {
+                        Thread.sleep(delayMillis);
+                    }
+                }
+            }
+        } finally {
+            conflictRateTracker.exit(id);
+        }
+    }
+
+    public boolean isPessimistic(Long id) {
+        return conflictRateTracker.isPessimistic(id);
+    }
+
+    public double conflictRate(Long id) {
+        return conflictRateTracker.conflictRate(id);
+    }
+}
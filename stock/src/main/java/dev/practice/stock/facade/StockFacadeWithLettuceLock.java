@@ -1,16 +1,36 @@
 package dev.practice.stock.facade;
 
 import dev.practice.stock.repository.RedisLockRepository;
+import dev.practice.stock.service.StockDecreaseCommand;
 import dev.practice.stock.service.StockService;
-import lombok.RequiredArgsConstructor;
+import dev.practice.stock.support.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
 @Service
-@RequiredArgsConstructor
 public class StockFacadeWithLettuceLock {
 
+    private static final String STRATEGY = "lettuce";
+
     private final StockService stockService;
     private final RedisLockRepository redisLockRepository;
+    private final StockMetrics stockMetrics;
+    private final long waitMillis;
+
+    public StockFacadeWithLettuceLock(StockService stockService,
+                                      RedisLockRepository redisLockRepository,
+                                      StockMetrics stockMetrics,
+                                      @Value("${stock.lettuce.wait-millis:10000}") long waitMillis) {
+        this.stockService = stockService;
+        this.redisLockRepository = redisLockRepository;
+        this.stockMetrics = stockMetrics;
+        this.waitMillis = waitMillis;
+    }
 
     /**
      * lock 은 redis lettuce client 를 사용하여 분산 락
@@ -21,21 +41,79 @@ public class StockFacadeWithLettuceLock {
 
         // 스핀 락 방식
         // redis 의 부하를 줄이기 위해 sleep 을 넣었다.
+        long waitStart = System.nanoTime();
+        int spins = 0;
         while(!redisLockRepository.getLock(id)) {
-            System.out.println("lock 획득 실패, 0.1 초 대기");
+            spins++;
             try {
                 Thread.sleep(100L);
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
+        stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+        stockMetrics.recordRetries(STRATEGY, id, spins);
 
-        System.out.println("lock 획득 성공");
+        long holdStart = System.nanoTime();
         try {
             stockService.decreaseStock(id, quantity);
-        }finally {
-            System.out.println("lock 해제");
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw e;
+        } finally {
+            stockMetrics.recordTransaction(STRATEGY, id, holdStart);
             redisLockRepository.releaseLock(id);
+            stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+        }
+    }
+
+    /**
+     * 여러 재고의 락을 lua script 하나로 모두 잡거나 하나도 잡지 않는다. (RedisLockRepository.getLocks)
+     * - 일부만 잡고 기다리는 상태가 없으므로 데드락, 서로 양보하다가 진행하지 못하는 livelock 이 생기지 않는다.
+     * - 재고 수와 관계없이 획득 시도 한번, 해제 한번이 redis 요청 한번이다.
+     * - 해제는 요청마다 만든 owner 로 한다. (락이 만료된 뒤 다른 요청이 잡은 락은 지우지 않는다.)
+     * - wait millis 안에 획득하지 못하면 IllegalStateException 으로 실패한다. (StockFacadeWithRedissonLock 과 같다.)
+     */
+    public void decreaseStocks(List<StockDecreaseCommand> commands) {
+
+        Set<Long> ids = StockDecreaseCommand.sumById(commands).keySet();
+        String owner = UUID.randomUUID().toString();
+        boolean acquired = false;
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        long holdStart = 0L;
+        try {
+            int spins = 0;
+            while (!(acquired = redisLockRepository.getLocks(ids, owner))) {
+                // 다음 시도가 deadline 을 넘으면 기다리지 않고 실패한다.
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100L) - deadline > 0)
+                    break;
+                spins++;
+                Thread.sleep(100L);
+            }
+            stockMetrics.recordLockWait(STRATEGY, null, waitStart);
+            stockMetrics.recordRetries(STRATEGY, null, spins);
+
+            if (!acquired) {
+                throw new IllegalStateException("lock 획득 실패(timeout), ids = " + ids);
+            }
+
+            holdStart = System.nanoTime();
+            stockService.decreaseStocks(commands);
+            stockMetrics.recordTransaction(STRATEGY, null, holdStart);
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, null);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (acquired) {
+                redisLockRepository.releaseLocks(ids, owner);
+            }
+            if (holdStart != 0L) {
+                stockMetrics.recordLockHold(STRATEGY, null, holdStart);
+            }
         }
     }
 }
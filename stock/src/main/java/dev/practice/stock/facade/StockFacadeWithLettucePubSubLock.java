@@ -0,0 +1,96 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.repository.RedisLockReleaseSubscriber;
+import dev.practice.stock.repository.RedisLockRepository;
+import dev.practice.stock.service.StockService;
+import dev.practice.stock.support.KeyLockTable;
+import dev.practice.stock.support.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+@Service
+public class StockFacadeWithLettucePubSubLock {
+
+    private static final String STRATEGY = "lettuce_pubsub";
+
+    private final StockService stockService;
+    private final RedisLockRepository redisLockRepository;
+    private final RedisLockReleaseSubscriber redisLockReleaseSubscriber;
+    private final StockMetrics stockMetrics;
+    private final long fallbackPollMillis;
+
+    private final KeyLockTable<Long> localLockTable = new KeyLockTable<>();
+
+    public StockFacadeWithLettucePubSubLock(StockService stockService,
+                                            RedisLockRepository redisLockRepository,
+                                            RedisLockReleaseSubscriber redisLockReleaseSubscriber,
+                                            StockMetrics stockMetrics,
+                                            @Value("${stock.lettuce-lock.fallback-poll-millis:50}") long fallbackPollMillis) {
+        this.stockService = stockService;
+        this.redisLockRepository = redisLockRepository;
+        this.redisLockReleaseSubscriber = redisLockReleaseSubscriber;
+        this.stockMetrics = stockMetrics;
+        this.fallbackPollMillis = fallbackPollMillis;
+    }
+
+    /**
+     * lock 은 redis lettuce client 의 setnx 로 획득하고, 대기는 pub/sub 알림으로 한다.
+     * 실제 데이터는 mysql 에서 처리
+     *
+     * - StockFacadeWithLettuceLock 은 0.1 초 마다 setnx 를 재시도한다. (락이 풀려도 최대 0.1 초를 그냥 기다리고, redis 에 부하를 준다.)
+     * - 락을 가진 스레드가 해제하면서 lock-release:{id} 채널에 알리고,
+     * - 대기 스레드는 알림을 받았을 때만 setnx 를 재시도한다. (락 인계 지연이 redis 왕복 1번 수준으로 줄어든다.)
+     * - 알림을 놓치는 경우를 대비해 fallbackPollMillis 마다 한번은 재시도한다.
+     *
+     * - 같은 JVM 안에서는 재고 id 별 로컬 락으로 먼저 줄을 세운다.
+     * - 락 해제 알림 하나에 JVM 의 모든 대기 스레드가 setnx 를 보내지 않고, JVM 당 한 스레드만 redis 락을 두고 경쟁한다.
+     * - 락의 value 에 요청마다 만든 owner 를 넣고, 해제할 때 owner 가 같을 때만 지운다.
+     */
+    public void decreaseStock(Long id, Long quantity) {
+
+        // 로컬 락 대기 시간도 락 대기 시간에 포함한다.
+        long waitStart = System.nanoTime();
+
+        localLockTable.executeWithLock(id, () -> {
+            String owner = UUID.randomUUID().toString();
+            stockMetrics.recordRetries(STRATEGY, id, acquireLock(id, owner));
+            stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+
+            long holdStart = System.nanoTime();
+            try {
+                stockService.decreaseStock(id, quantity);
+            } catch (IllegalArgumentException e) {
+                stockMetrics.incrementInsufficient(STRATEGY, id);
+                throw e;
+            } finally {
+                stockMetrics.recordTransaction(STRATEGY, id, holdStart);
+                redisLockRepository.releaseLockAndNotify(id, owner);
+                stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+            }
+        });
+    }
+
+    // @return 락을 획득하기까지 실패한 setnx 횟수
+    private int acquireLock(Long id, String owner) {
+
+        RedisLockReleaseSubscriber.Signal signal = redisLockReleaseSubscriber.register(id);
+
+        try {
+            for (int retries = 0; ; retries++) {
+                long seen = signal.generation();
+
+                if (redisLockRepository.getLock(id, owner))
+                    return retries;
+
+                signal.await(seen, fallbackPollMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            redisLockReleaseSubscriber.unregister(id);
+        }
+    }
+}
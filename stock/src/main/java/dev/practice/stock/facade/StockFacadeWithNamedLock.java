@@ -1,26 +1,82 @@
 package dev.practice.stock.facade;
 
-import dev.practice.stock.repository.LockRepository;
+import dev.practice.stock.repository.NamedLockExecutor;
+import dev.practice.stock.service.StockDecreaseCommand;
 import dev.practice.stock.service.StockService;
+import dev.practice.stock.support.StockMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class StockFacadeWithNamedLock {
 
+    private static final String STRATEGY = "named_lock";
+
     private final StockService stockService;
-    private final LockRepository lockRepository;
+    private final NamedLockExecutor namedLockExecutor;
+    private final StockMetrics stockMetrics;
 
-    @Transactional
+    /**
+     * lock 은 네임드 락 전용 커넥션 풀에서 처리 (NamedLockExecutor)
+     * 실제 데이터는 기존 커넥션 풀에서 처리
+     *
+     * - 락 커넥션과 데이터 커넥션이 다른 풀에서 나오므로, 락 대기 스레드가 데이터 커넥션 풀을 고갈시키지 않는다.
+     * - 락 획득에 실패(timeout)하면 IllegalStateException 이 발생하고 decreaseStock 은 실행되지 않는다.
+     */
     public void decreaseStock(Long id, Long quantity) {
+        long waitStart = System.nanoTime();
+        countFailures(id, () -> namedLockExecutor.executeWithLock(String.valueOf(id),
+                locked(id, waitStart, () -> stockService.decreaseStock(id, quantity))));
+    }
+
+    public void decreaseStock(Long id, Long quantity, int timeoutSeconds) {
+        long waitStart = System.nanoTime();
+        countFailures(id, () -> namedLockExecutor.executeWithLock(String.valueOf(id), timeoutSeconds,
+                locked(id, waitStart, () -> stockService.decreaseStock(id, quantity))));
+    }
 
+    // 재고 id 오름차순으로 락을 획득한다.
+    public void decreaseStocks(List<StockDecreaseCommand> commands) {
+        List<String> keys = StockDecreaseCommand.sumById(commands).keySet().stream()
+                .map(String::valueOf)
+                .toList();
+
+        long waitStart = System.nanoTime();
+        countFailures(null, () -> namedLockExecutor.executeWithLocks(keys,
+                locked(null, waitStart, () -> stockService.decreaseStocks(commands))));
+    }
+
+    /**
+     * get_lock 이 timeout 으로 실패하면 IllegalStateException 이 발생한다.
+     */
+    private void countFailures(Long id, Runnable execution) {
         try {
-            lockRepository.getLock(String.valueOf(id)); //실패나면 decreaseStock 메서드가 실행되지 않는다.
-            stockService.decreaseStock(id, quantity); //트랜잭션 분리
-        }finally {
-            lockRepository.releaseLock(String.valueOf(id)); //실패나면 decreaseStock 과 상관 없고, 재시도 로직이 필요할 수 있을 듯..?
+            execution.run();
+        } catch (IllegalStateException e) {
+            stockMetrics.incrementLockFailure(STRATEGY, id);
+            throw e;
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw e;
         }
     }
+
+    // 락을 획득한 뒤에 실행되는 작업, 락 대기/점유 시간과 트랜잭션 시간을 기록한다.
+    private Supplier<Void> locked(Long id, long waitStart, Runnable task) {
+        return () -> {
+            stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+            long holdStart = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                stockMetrics.recordTransaction(STRATEGY, id, holdStart);
+                stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+            }
+            return null;
+        };
+    }
 }
@@ -1,27 +1,68 @@
 package dev.practice.stock.facade;
 
 import dev.practice.stock.service.StockServiceWithOptimisticLock;
-import lombok.RequiredArgsConstructor;
+import dev.practice.stock.support.RetryPolicy;
+import dev.practice.stock.support.RetryStatistics;
+import dev.practice.stock.support.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.TimeUnit;
+
 @Service
-@RequiredArgsConstructor
 public class StockFacadeWithOptimisticLock {
 
+    private static final String STRATEGY = "optimistic";
+
     private final StockServiceWithOptimisticLock stockServiceWithOptimisticLock;
+    private final StockMetrics stockMetrics;
+    private final RetryPolicy retryPolicy;
+    private final RetryStatistics retryStatistics = new RetryStatistics();
 
+    public StockFacadeWithOptimisticLock(StockServiceWithOptimisticLock stockServiceWithOptimisticLock,
+                                         StockMetrics stockMetrics,
+                                         @Value("${stock.optimistic-lock.retry.max-attempts:100}") int maxAttempts,
+                                         @Value("${stock.optimistic-lock.retry.base-delay-millis:10}") long baseDelayMillis,
+                                         @Value("${stock.optimistic-lock.retry.max-delay-millis:200}") long maxDelayMillis,
+                                         @Value("${stock.optimistic-lock.retry.deadline-millis:10000}") long deadlineMillis) {
+        this.stockServiceWithOptimisticLock = stockServiceWithOptimisticLock;
+        this.stockMetrics = stockMetrics;
+        this.retryPolicy = new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, deadlineMillis);
+    }
+
+    /**
+     * 재시도 로직
+     * - 고정 대기 후 무한 재시도하면 충돌이 많을 때 스레드와 DB 커넥션을 계속 점유한다.
+     * - 최대 시도 횟수, deadline 을 넘으면 마지막 OptimisticLockingFailureException 을 그대로 던진다.
+     * - 대기 시간은 RetryPolicy 의 decorrelated jitter 를 따른다.
+     */
     public void decreaseStock(Long id, Long quantity) throws InterruptedException {
 
-        // 재시도 로직
-        while (true) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryPolicy.getDeadlineMillis());
+        long delayMillis = retryPolicy.getBaseDelayMillis();
+
+        for (int attempt = 1; ; attempt++) {
             try {
                 stockServiceWithOptimisticLock.decreaseStock(id, quantity);
-                break;
-            }catch (OptimisticLockingFailureException e) {
-                System.out.println("OptimisticLockingFailureException 발생");
-                Thread.sleep(50L);
+                retryStatistics.recordSuccess(attempt);
+                stockMetrics.recordRetries(STRATEGY, id, attempt - 1);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                delayMillis = retryPolicy.nextDelayMillis(delayMillis);
+
+                if (!retryPolicy.canRetry(attempt, delayMillis, deadline)) {
+                    retryStatistics.recordFailure(attempt);
+                    stockMetrics.incrementLockFailure(STRATEGY, id);
+                    throw e;
+                }
+
+                Thread.sleep(delayMillis);
             }
         }
     }
+
+    public RetryStatistics getRetryStatistics() {
+        return retryStatistics;
+    }
 }
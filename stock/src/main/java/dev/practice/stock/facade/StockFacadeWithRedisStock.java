@@ -0,0 +1,53 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.RedisStockRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+
+@Service
+@RequiredArgsConstructor
+public class StockFacadeWithRedisStock {
+
+    private final RedisStockRepository redisStockRepository;
+    private static final String STRATEGY = "redis_stock";
+
+    private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+
+    /**
+     * 재고 수량은 redis 에서 관리 (lua script 로 확인 + 감소를 원자적으로 처리)
+     * mysql 은 StockWriteBehindService 가 비동기로 반영
+     *
+     * - StockFacadeWithLettuceLock, StockFacadeWithRedissonLock 은 redis 를 락으로만 사용하고 실제 감소는 mysql 트랜잭션에서 처리한다.
+     * - 이 방식은 락 획득/해제 요청도, 요청 처리 중의 DB 트랜잭션도 없다. redis 요청 1번으로 끝난다.
+     *
+     * 참고
+     * - DB 반영이 비동기이므로 DB 의 재고는 잠시 동안 redis 보다 클 수 있다. (조회는 redis 기준으로 해야한다.)
+     * - redis 에 재고가 없으면 DB 에서 한번 적재한다. (setnx 로 적재하므로 여러 스레드가 동시에 적재해도 한번만 반영된다.)
+     */
+    public void decreaseStock(Long id, Long quantity) {
+
+        Long remain = redisStockRepository.decrease(id, quantity);
+
+        // script 결과는 null 일 수 있으므로(pipeline, transaction 안에서 실행 등) unboxing 하지 않고 비교한다.
+        if (Objects.equals(remain, RedisStockRepository.NOT_LOADED)) {
+            Stock stock = stockRepository.findById(id).orElseThrow();
+            redisStockRepository.load(id, stock.getQuantity());
+            remain = redisStockRepository.decrease(id, quantity);
+        }
+
+        if (remain == null) {
+            throw new IllegalStateException("redis 재고 감소 결과를 받지 못했습니다. id = " + id);
+        }
+
+        if (remain == RedisStockRepository.NOT_ENOUGH) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package dev.practice.stock.facade;
 
+import dev.practice.stock.service.StockDecreaseCommand;
 import dev.practice.stock.service.StockService;
-import lombok.RequiredArgsConstructor;
+import dev.practice.stock.support.StockMetrics;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-@RequiredArgsConstructor
 @Service
 public class StockFacadeWithRedissonLock {
 
@@ -24,8 +27,25 @@ public class StockFacadeWithRedissonLock {
      * repo Redis/DistributedLock 참고
      */
 
+    private static final String STRATEGY = "redisson";
+
     private final RedissonClient redissonClient;
     private final StockService stockService;
+    private final StockMetrics stockMetrics;
+    private final long waitMillis;
+    private final long leaseMillis;
+
+    public StockFacadeWithRedissonLock(RedissonClient redissonClient,
+                                       StockService stockService,
+                                       StockMetrics stockMetrics,
+                                       @Value("${stock.redisson.wait-millis:5000}") long waitMillis,
+                                       @Value("${stock.redisson.lease-millis:1000}") long leaseMillis) {
+        this.redissonClient = redissonClient;
+        this.stockService = stockService;
+        this.stockMetrics = stockMetrics;
+        this.waitMillis = waitMillis;
+        this.leaseMillis = leaseMillis;
+    }
 
     /**
      * lock 은 redis redisson client 를 사용하여 분산 락
@@ -36,23 +56,77 @@ public class StockFacadeWithRedissonLock {
 
         RLock lock = redissonClient.getLock(generateKey(id));
 
+        boolean available = false;
+        long holdStart = 0L;
         try {
-            // 락 획득 하지 못할 시 5초간 대기, 락 획득 시 1초 동안 락 점유
-            boolean available = lock.tryLock(5, 1, TimeUnit.SECONDS);
+            // 락 획득 하지 못할 시 wait(기본 5초) 동안 대기, 락 획득 시 lease(기본 1초) 동안 락 점유
+            long waitStart = System.nanoTime();
+            available = lock.tryLock(waitMillis, leaseMillis, TimeUnit.MILLISECONDS);
+            stockMetrics.recordLockWait(STRATEGY, id, waitStart);
 
+            // 다른 전략과 같이 락 획득 실패는 예외로 알린다. (그냥 반환하면 감소되지 않았는데 성공으로 보인다.)
             if(!available) {
-                System.out.println("lock 획득 실패");
-                return;
+                stockMetrics.incrementLockFailure(STRATEGY, id);
+                throw new IllegalStateException("lock 획득 실패(timeout), id = " + id);
             }
 
-            System.out.println("lock 획득 성공");
+            holdStart = System.nanoTime();
             stockService.decreaseStock(id, quantity);
+            stockMetrics.recordTransaction(STRATEGY, id, holdStart);
 
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw e;
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            System.out.println("lock 해제");
-            lock.unlock();
+            // 획득하지 못한 락을 해제하면 IllegalMonitorStateException 이 발생한다.
+            if (available) {
+                lock.unlock();
+                stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+            }
+        }
+    }
+
+    /**
+     * 여러 재고의 락을 RedissonMultiLock 으로 한번에 획득한다.
+     * - MultiLock 은 넘겨준 순서대로 락을 획득하므로 재고 id 오름차순으로 넘긴다.
+     * - 하나라도 획득하지 못하면 이미 획득한 락을 해제하고 IllegalStateException 으로 실패한다.
+     */
+    public void decreaseStocks(List<StockDecreaseCommand> commands) {
+
+        Set<Long> ids = StockDecreaseCommand.sumById(commands).keySet();
+        RLock[] locks = ids.stream()
+                .map(id -> redissonClient.getLock(generateKey(id)))
+                .toArray(RLock[]::new);
+        RLock multiLock = redissonClient.getMultiLock(locks);
+
+        boolean available = false;
+        long holdStart = 0L;
+        try {
+            long waitStart = System.nanoTime();
+            available = multiLock.tryLock(waitMillis, leaseMillis, TimeUnit.MILLISECONDS);
+            stockMetrics.recordLockWait(STRATEGY, null, waitStart);
+
+            if(!available) {
+                stockMetrics.incrementLockFailure(STRATEGY, null);
+                throw new IllegalStateException("lock 획득 실패(timeout), ids = " + ids);
+            }
+
+            holdStart = System.nanoTime();
+            stockService.decreaseStocks(commands);
+            stockMetrics.recordTransaction(STRATEGY, null, holdStart);
+
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, null);
+            throw e;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (available) {
+                multiLock.unlock();
+                stockMetrics.recordLockHold(STRATEGY, null, holdStart);
+            }
         }
     }
 
@@ -0,0 +1,68 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.RedissonStockSemaphoreRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.service.StockSemaphoreWriteBehindService;
+import dev.practice.stock.support.StockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class StockFacadeWithRedissonSemaphore {
+
+    /**
+     * 재고 수량을 Redisson RSemaphore 의 permit 으로 관리한다. (락 없이 감소)
+     * mysql 은 StockSemaphoreWriteBehindService 가 비동기로 반영
+     *
+     * - StockFacadeWithRedissonLock 은 락 획득, mysql 트랜잭션, 락 해제로 redis 요청 2번과 트랜잭션 1번이 필요하다.
+     * - 또 트랜잭션이 lease(1초) 보다 길어지면 락이 먼저 풀려서, 다른 스레드가 같이 감소하고 unlock 은 예외가 발생한다.
+     * - 이 방식은 tryAcquire(quantity) 한번으로 재고 확인과 감소를 끝낸다. 락이 아니므로 lease 가 없다.
+     * - permit 이 부족하면 기다리지 않고 바로 실패한다.
+     *
+     * 참고
+     * - DB 반영이 비동기이므로 DB 의 재고는 잠시 동안 redis 보다 클 수 있다. (조회는 redis 기준으로 해야한다.)
+     * - redis 에 재고가 없으면 DB 에서 한번 적재한다. (trySetPermits 로 적재하므로 여러 스레드가 동시에 적재해도 한번만 반영된다.)
+     * - permit 은 int 이므로 Integer.MAX_VALUE 보다 큰 재고는 다룰 수 없다.
+     */
+
+    private static final String STRATEGY = "redisson_semaphore";
+
+    private final RedissonStockSemaphoreRepository redissonStockSemaphoreRepository;
+    private final StockSemaphoreWriteBehindService stockSemaphoreWriteBehindService;
+    private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+
+    public void decreaseStock(Long id, Long quantity) {
+
+        if (quantity > Integer.MAX_VALUE || !tryAcquire(id, quantity.intValue())) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+
+        stockSemaphoreWriteBehindService.markDirty(id);
+    }
+
+    public Long getQuantity(Long id) {
+        Long quantity = redissonStockSemaphoreRepository.getQuantity(id);
+        return quantity != null ? quantity : stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+    }
+
+    /**
+     * 없는 semaphore 는 permit 이 0 인 것과 구분되지 않으므로, 실패했을 때만 적재 여부를 확인한다.
+     * - 첫 tryAcquire 와 exists 사이에 다른 스레드가 적재했을 수 있으므로, 적재 여부와 관계없이 한번 더 시도한다.
+     * - 그래서 재고 부족 응답은 redis 요청이 3번이다.
+     */
+    private boolean tryAcquire(Long id, int permits) {
+
+        if (redissonStockSemaphoreRepository.tryAcquire(id, permits))
+            return true;
+
+        if (!redissonStockSemaphoreRepository.exists(id)) {
+            Stock stock = stockRepository.findById(id).orElseThrow();
+            redissonStockSemaphoreRepository.load(id, stock.getQuantity());
+        }
+        return redissonStockSemaphoreRepository.tryAcquire(id, permits);
+    }
+}
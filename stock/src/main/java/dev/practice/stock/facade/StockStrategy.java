@@ -0,0 +1,39 @@
+package dev.practice.stock.facade;
+
+/**
+ * 재고 감소 전략
+ * - batch 가 true 인 전략만 여러 재고 감소(decreaseStocks)를 지원한다.
+ */
+public enum StockStrategy {
+
+    SYNCHRONIZED(false),
+    KEY_LOCK(false),
+    PESSIMISTIC(true),
+    CONDITIONAL(false),
+    GROUP_COMMIT(false),
+    PARTITIONED(false),
+    OPTIMISTIC(false),
+    ADAPTIVE(false),
+    NAMED_LOCK(true),
+    LETTUCE(true),
+    LETTUCE_PUBSUB(false),
+    REDISSON(true),
+    REDISSON_SEMAPHORE(false),
+    REDIS_STOCK(false),
+    SHARDED(false),
+    ALLOTMENT(false),
+    LEDGER(false),
+    IN_MEMORY(false),
+    JOURNAL(false),
+    OFF_HEAP(false);
+
+    private final boolean batch;
+
+    StockStrategy(boolean batch) {
+        this.batch = batch;
+    }
+
+    public boolean supportsBatch() {
+        return batch;
+    }
+}
@@ -17,7 +17,7 @@ public interface LockRepository extends JpaRepository<Stock, Long> {
      * - 트랜잭션이 해제될때 락이 자동으로 해제 되지 않기 때문에 ... 해제를 직접해주거나 선점시간이 끝나면 해제가 된다.
      * - mysql 에서는 get_lock 명령어를 통해 네임드락을 획득할수 있다. release_lock 명령어를 통해 해제할수있다.
      * - 네임드락은 별도의 데이터소스로 진행해야한다. 실제 데이터의 데이터 소스에 네임드락을 사용하면 커넥션풀 부족할 수 있다.
-     * - - 현재 예제에서는 개발 편의를 위해서 분리하지 않았다.
+     * - - 이 repository 는 개발 편의를 위해서 분리하지 않았다. (분리한 예제는 NamedLockExecutor 참고)
      *
      * 네임드 락은 분산락 (redis redisson 의 분산락) 과 거의 동일한 기능이다.
      * 그래서, 네임드 락을 사용할 바에는 redisson 을 사용할 것 같다.
@@ -0,0 +1,156 @@
+package dev.practice.stock.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Slf4j
+public class NamedLockExecutor implements AutoCloseable {
+
+    /**
+     * 네임드 락 전용 datasource(커넥션 풀) 로 get_lock, release_lock 을 수행한다.
+     *
+     * - LockRepository 는 실제 데이터와 같은 커넥션 풀을 사용했다.
+     * - - 락을 잡은 커넥션 + REQUIRES_NEW 트랜잭션 커넥션, 요청 하나가 커넥션 2개를 점유했다.
+     * - - 락 대기 스레드가 데이터 커넥션 풀을 고갈시킬 수 있어서 maximum-pool-size 를 40 으로 올려야 했다.
+     * - 네임드 락은 세션(커넥션) 단위이므로 get_lock 과 release_lock 은 반드시 같은 커넥션에서 수행해야 한다.
+     * - - 커넥션 하나를 꺼내 락 획득 ~ 해제까지 고정해서 사용한다.
+     * - get_lock 반환값
+     * - - 1 : 획득 성공, 0 : timeout, null : 에러
+     * - release_lock 반환값
+     * - - 1 : 해제 성공, 0 : 다른 세션의 락, null : 없는 락
+     */
+
+    private static final String GET_LOCK = "select get_lock(?, ?)";
+    private static final String RELEASE_LOCK = "select release_lock(?)";
+
+    private final HikariDataSource dataSource;
+    private final int defaultTimeoutSeconds;
+
+    public NamedLockExecutor(HikariDataSource dataSource, int defaultTimeoutSeconds) {
+        this.dataSource = dataSource;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+    }
+
+    public <T> T executeWithLock(String key, Supplier<T> action) {
+        return executeWithLock(key, defaultTimeoutSeconds, action);
+    }
+
+    public <T> T executeWithLock(String key, int timeoutSeconds, Supplier<T> action) {
+        return execute(List.of(key), timeoutSeconds, action);
+    }
+
+    public void executeWithLock(String key, Runnable action) {
+        executeWithLock(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 여러 네임드 락을 하나의 커넥션에서 주어진 순서대로 획득한다. (MySQL 5.7 부터 세션 당 여러 락 가능)
+     * - 데드락을 피하려면 호출하는 쪽에서 항상 같은 순서(ex. 재고 id 오름차순)로 넘겨야 한다.
+     * - 하나라도 획득에 실패하면 이미 획득한 락을 모두 해제한다.
+     */
+    public <T> T executeWithLocks(List<String> keys, Supplier<T> action) {
+        return execute(keys, defaultTimeoutSeconds, action);
+    }
+
+    /**
+     * 락 해제를 확인하지 못한 커넥션은 풀에 돌려주지 않고 버린다.
+     * - release_lock 이 1 이 아니거나(0 : 다른 세션의 락, null : 없는 락) 예외가 발생하면, 락이 세션에 남아있을 수 있다.
+     * - 그대로 풀에 돌려주면 커넥션이 살아있는 동안 락이 풀리지 않고, 다음에 그 커넥션을 꺼낸 요청은 재진입으로 락을 통과한다.
+     * - get_lock 도중 예외가 발생한 경우도 서버에서는 획득했을 수 있으므로 같이 버린다.
+     * - evictConnection 으로 물리 커넥션을 닫으면 세션이 끝나므로 MySQL 이 남은 락을 해제한다.
+     */
+    private <T> T execute(List<String> keys, int timeoutSeconds, Supplier<T> action) {
+
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException("named lock 커넥션 획득 실패, keys = " + keys, e);
+        }
+
+        boolean clean = true;
+        List<String> acquired = new ArrayList<>();
+        try {
+            for (String key : keys) {
+                getLock(connection, key, timeoutSeconds);
+                acquired.add(key);
+            }
+            return action.get();
+        } catch (SQLException e) {
+            clean = false;
+            throw new IllegalStateException("named lock 처리 실패, keys = " + keys, e);
+        } finally {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                clean &= releaseLock(connection, acquired.get(i));
+            }
+            close(connection, clean);
+        }
+    }
+
+    private void getLock(Connection connection, String key, int timeoutSeconds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(GET_LOCK)) {
+            statement.setString(1, key);
+            statement.setInt(2, timeoutSeconds);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                int result = resultSet.getInt(1);
+
+                if (resultSet.wasNull())
+                    throw new IllegalStateException("lock 획득 중 에러 발생, key = " + key);
+                if (result != 1)
+                    throw new IllegalStateException("lock 획득 실패(timeout), key = " + key);
+            }
+        }
+    }
+
+    /**
+     * @return 해제 되었으면(release_lock 결과가 1) true
+     */
+    private boolean releaseLock(Connection connection, String key) {
+        try (PreparedStatement statement = connection.prepareStatement(RELEASE_LOCK)) {
+            statement.setString(1, key);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                int result = resultSet.getInt(1);
+
+                if (resultSet.wasNull() || result != 1) {
+                    log.warn("lock 해제 실패, key = {}, result = {}", key, resultSet.wasNull() ? null : result);
+                    return false;
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            log.warn("lock 해제 중 에러 발생, key = {}", key, e);
+            return false;
+        }
+    }
+
+    private void close(Connection connection, boolean clean) {
+        if (!clean) {
+            dataSource.evictConnection(connection);
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("named lock 커넥션 반환 실패", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
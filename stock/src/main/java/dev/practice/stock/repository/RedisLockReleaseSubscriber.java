@@ -0,0 +1,73 @@
+package dev.practice.stock.repository;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RedisLockReleaseSubscriber implements MessageListener {
+
+    /**
+     * lock-release:* 채널을 구독하여, 락 해제 메시지를 받으면 해당 키를 기다리는 스레드를 깨운다.
+     *
+     * - 채널은 패턴 구독 하나로 모든 키를 받는다. (키 마다 subscribe/unsubscribe 하지 않음)
+     * - 대기 스레드가 있는 키만 Signal 을 가지고 있고, 대기 스레드가 없으면 제거한다.
+     * - 메시지를 놓칠 수 있으므로(pub/sub 은 전달 보장을 하지 않음) 대기는 항상 timeout 을 가진다.
+     */
+
+    private final ConcurrentHashMap<Long, Signal> signals = new ConcurrentHashMap<>();
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Long key = Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.signal();
+        }
+    }
+
+    // 락 획득을 시도하기 전에 등록해야 시도와 대기 사이에 온 메시지를 놓치지 않는다.
+    public Signal register(Long key) {
+        return signals.compute(key, (k, s) -> {
+            Signal target = (s == null) ? new Signal() : s;
+            target.users++;
+            return target;
+        });
+    }
+
+    public void unregister(Long key) {
+        signals.computeIfPresent(key, (k, s) -> --s.users == 0 ? null : s);
+    }
+
+    public static final class Signal {
+
+        // compute 내부에서만 읽고 쓴다.
+        private int users;
+
+        private long generation;
+
+        public synchronized long generation() {
+            return generation;
+        }
+
+        private synchronized void signal() {
+            generation++;
+            notifyAll();
+        }
+
+        // seen 이후에 해제 메시지가 오거나 timeout 이 지날 때까지 대기한다.
+        public synchronized void await(long seen, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+
+            while (generation == seen && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package dev.practice.stock.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @RequiredArgsConstructor
 @Repository
@@ -30,20 +37,147 @@ public class RedisLockRepository {
      * 재시도 필요하면 redlock 을 구현한 Redisson client 사용
      */
 
+    public static final String RELEASE_CHANNEL_PATTERN = "lock-release:*";
+
+    private static final long LOCK_TTL_MILLIS = 3000L;
+
+    // 내가(owner) 잡은 락을 삭제한 경우에만 해제 메시지를 발행한다. (만료 후 다른 owner 가 잡은 락은 지우지 않음)
+    private static final RedisScript<Long> RELEASE_AND_NOTIFY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+                return 0
+            end
+            local deleted = redis.call('DEL', KEYS[1])
+            if deleted == 1 then
+                redis.call('PUBLISH', ARGV[2], ARGV[3])
+            end
+            return deleted
+            """, Long.class);
+
+    // 하나라도 잡혀있으면 아무것도 잡지 않는다. (all or none)
+    private static final RedisScript<Long> ACQUIRE_ALL_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #KEYS do
+                if redis.call('EXISTS', KEYS[i]) == 1 then
+                    return 0
+                end
+            end
+            for i = 1, #KEYS do
+                redis.call('SET', KEYS[i], ARGV[1], 'PX', ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    // 내가(owner) 잡은 락만 지우고, 지운 락마다 해제 메시지를 발행한다. (KEYS[i] 의 채널 = ARGV[2i], 메시지 = ARGV[2i+1])
+    private static final RedisScript<Long> RELEASE_ALL_AND_NOTIFY_SCRIPT = new DefaultRedisScript<>("""
+            local released = 0
+            for i = 1, #KEYS do
+                if redis.call('GET', KEYS[i]) == ARGV[1] and redis.call('DEL', KEYS[i]) == 1 then
+                    redis.call('PUBLISH', ARGV[2 * i], ARGV[2 * i + 1])
+                    released = released + 1
+                end
+            end
+            return released
+            """, Long.class);
+
     private final StringRedisTemplate stringRedisTemplate;
 
     // 3초간 유효한 lock 을 생성한다.
     public Boolean getLock(Long key) {
         return stringRedisTemplate
                 .opsForValue()
-                .setIfAbsent(generateKey(key), "lock", Duration.ofMillis(3000L));
+                .setIfAbsent(generateKey(key), "lock", Duration.ofMillis(LOCK_TTL_MILLIS));
+    }
+
+    // value 에 owner 를 넣은 3초간 유효한 lock 을 생성한다. (releaseLockAndNotify 에서 owner 를 확인)
+    public boolean getLock(Long key, String owner) {
+        return Boolean.TRUE.equals(stringRedisTemplate
+                .opsForValue()
+                .setIfAbsent(generateKey(key), owner, Duration.ofMillis(LOCK_TTL_MILLIS)));
     }
 
     public Boolean releaseLock(Long key) {
         return stringRedisTemplate.delete(generateKey(key));
     }
 
+    /**
+     * 여러 재고의 락을 lua script 하나로 모두 잡거나, 하나도 잡지 않는다.
+     * - getLock 을 재고 수 만큼 호출하면 redis 요청이 N 번이고, 일부만 잡은 상태에서 서로 기다리다가 놓고 다시 잡기를 반복할 수 있다.
+     * - 이 방식은 요청 한번에 모두 확인하고 모두 잡는다. 일부만 잡은 상태가 없으므로 획득 순서도 상관없다.
+     * - value 에 owner(요청마다 만든 UUID)를 넣어서, 해제할 때 내가 잡은 락만 지운다.
+     *
+     * 참고
+     * - redis cluster 에서는 script 의 key 들이 같은 slot 에 있어야 한다. (단일 redis 기준)
+     */
+    public boolean getLocks(Collection<Long> keys, String owner) {
+        Long acquired = stringRedisTemplate.execute(
+                ACQUIRE_ALL_SCRIPT,
+                generateKeys(keys),
+                owner, String.valueOf(LOCK_TTL_MILLIS));
+        return acquired != null && acquired == 1L;
+    }
+
+    /**
+     * 내가(owner) 잡은 락을 모두 해제하고, 해제한 락마다 releaseLockAndNotify 와 같은 채널로 알린다.
+     * - 같은 재고를 releaseLockAndNotify 쪽(pub/sub)에서 기다리는 스레드도 메시지를 받고 바로 획득을 시도한다.
+     *
+     * @return 해제한 락 수
+     */
+    public long releaseLocks(Collection<Long> keys, String owner) {
+        List<String> lockKeys = new ArrayList<>(keys.size());
+        List<String> args = new ArrayList<>(keys.size() * 2 + 1);
+        args.add(owner);
+        for (Long key : keys) {
+            lockKeys.add(generateKey(key));
+            args.add(generateChannel(key));
+            args.add(String.valueOf(key));
+        }
+
+        Long released = stringRedisTemplate.execute(RELEASE_ALL_AND_NOTIFY_SCRIPT, lockKeys, args.toArray());
+        return released != null ? released : 0L;
+    }
+
+    /**
+     * 여러 재고의 락이 잡혀있는지 pipeline 으로 한번에 확인한다. (EXISTS N 번을 요청 한번으로)
+     *
+     * @return keys 순서대로 잡혀있으면 true
+     */
+    public List<Boolean> isLocked(Collection<Long> keys) {
+        List<String> lockKeys = generateKeys(keys);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String lockKey : lockKeys) {
+                connection.keyCommands().exists(lockKey.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        return results.stream()
+                .map(Boolean.TRUE::equals)
+                .toList();
+    }
+
+    /**
+     * 락 해제와 해제 알림(publish)을 lua script 하나로 처리한다.
+     * - 채널 = lock-release:{stock id}, 메시지 = stock id
+     * - 대기중인 스레드는 스핀하지 않고 메시지를 받으면 락 획득을 시도한다.
+     * - 락의 value 가 owner 와 같을 때만 지운다. (락이 만료된 뒤 다른 요청이 잡은 락은 지우지 않는다.)
+     */
+    public boolean releaseLockAndNotify(Long key, String owner) {
+        Long deleted = stringRedisTemplate.execute(
+                RELEASE_AND_NOTIFY_SCRIPT,
+                List.of(generateKey(key)),
+                owner, generateChannel(key), String.valueOf(key));
+        return deleted != null && deleted == 1L;
+    }
+
+    private String generateChannel(Long key) {
+        return String.format("lock-release:%s", key);
+    }
+
     private String generateKey(Long key) {
         return String.format("lock:%s", key);
     }
+
+    private List<String> generateKeys(Collection<Long> keys) {
+        return keys.stream()
+                .map(this::generateKey)
+                .toList();
+    }
 }
@@ -0,0 +1,135 @@
+package dev.practice.stock.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+public class RedisStockRepository {
+
+    /**
+     * 재고 수량 자체를 redis 에 저장한다. (redis 가 원본, mysql 은 write-behind 로 따라간다.)
+     *
+     * - key = stock:{stock id}, value = 재고 수량
+     * - 재고 확인과 감소를 lua script 하나로 수행한다.
+     * - redis 는 script 를 원자적으로(다른 명령어가 끼어들지 않게) 실행하므로 별도의 락이 필요 없다.
+     * - 감소에 성공하면 같은 script 안에서 stock:dirty set 에 재고 id 를 추가한다. (DB 반영 대상)
+     *
+     * write-behind
+     * - stock:dirty 에서 꺼낸 id 는 DB 반영이 끝날 때까지 stock:processing 에 보관한다.
+     * - 반영 도중 애플리케이션이 죽어도 stock:processing 에 남아있으므로 재시작 시 다시 반영할 수 있다.
+     */
+
+    public static final long NOT_ENOUGH = -1L;
+    public static final long NOT_LOADED = -2L;
+
+    private static final String DIRTY_KEY = "stock:dirty";
+    private static final String PROCESSING_KEY = "stock:processing";
+
+    private static final RedisScript<Long> DECREASE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current == false then
+                return -2
+            end
+            local quantity = tonumber(ARGV[1])
+            if tonumber(current) < quantity then
+                return -1
+            end
+            local remain = redis.call('DECRBY', KEYS[1], quantity)
+            redis.call('SADD', KEYS[2], ARGV[2])
+            return remain
+            """, Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>("""
+            local ids = redis.call('SPOP', KEYS[1], ARGV[1])
+            for _, id in ipairs(ids) do
+                redis.call('SADD', KEYS[2], id)
+            end
+            return ids
+            """, List.class);
+
+    private static final RedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>("""
+            local count = redis.call('SCARD', KEYS[2])
+            if count > 0 then
+                redis.call('SUNIONSTORE', KEYS[1], KEYS[1], KEYS[2])
+                redis.call('DEL', KEYS[2])
+            end
+            return count
+            """, Long.class);
+
+    private static final RedisScript<Long> REQUEUE_IDS_SCRIPT = new DefaultRedisScript<>("""
+            for _, id in ipairs(ARGV) do
+                redis.call('SMOVE', KEYS[2], KEYS[1], id)
+            end
+            return #ARGV
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * @return 감소 후 남은 재고, 재고 부족 시 NOT_ENOUGH, redis 에 재고가 없으면 NOT_LOADED
+     */
+    public Long decrease(Long id, Long quantity) {
+        return stringRedisTemplate.execute(
+                DECREASE_SCRIPT,
+                List.of(generateKey(id), DIRTY_KEY),
+                String.valueOf(quantity), String.valueOf(id));
+    }
+
+    // 이미 다른 스레드(노드)가 적재했다면 덮어쓰지 않는다.
+    public Boolean load(Long id, Long quantity) {
+        return stringRedisTemplate
+                .opsForValue()
+                .setIfAbsent(generateKey(id), String.valueOf(quantity));
+    }
+
+    public Long getQuantity(Long id) {
+        String quantity = stringRedisTemplate.opsForValue().get(generateKey(id));
+        return quantity == null ? null : Long.valueOf(quantity);
+    }
+
+    public List<String> getQuantities(List<Long> ids) {
+        return stringRedisTemplate.opsForValue().multiGet(ids.stream().map(this::generateKey).toList());
+    }
+
+    // stock:dirty 에서 최대 count 개의 id 를 꺼내 stock:processing 으로 옮긴다.
+    @SuppressWarnings("unchecked")
+    public List<Long> drainDirty(int count) {
+        List<String> ids = stringRedisTemplate.execute(DRAIN_SCRIPT, List.of(DIRTY_KEY, PROCESSING_KEY), String.valueOf(count));
+        return ids == null ? List.of() : ids.stream().map(Long::valueOf).toList();
+    }
+
+    public void completeFlush(Collection<Long> ids) {
+        stringRedisTemplate.opsForSet().remove(PROCESSING_KEY, ids.stream().map(String::valueOf).toArray());
+    }
+
+    // DB 반영에 실패한 id 를 다시 stock:dirty 로 돌려놓는다.
+    public Long requeue(Collection<Long> ids) {
+        return stringRedisTemplate.execute(
+                REQUEUE_IDS_SCRIPT,
+                List.of(DIRTY_KEY, PROCESSING_KEY),
+                ids.stream().map(String::valueOf).toArray());
+    }
+
+    // 재시작 전에 반영하지 못한 id 를 모두 stock:dirty 로 돌려놓는다.
+    public Long requeueProcessing() {
+        return stringRedisTemplate.execute(REQUEUE_SCRIPT, List.of(DIRTY_KEY, PROCESSING_KEY));
+    }
+
+    public void delete(Long id) {
+        stringRedisTemplate.delete(generateKey(id));
+        stringRedisTemplate.opsForSet().remove(DIRTY_KEY, String.valueOf(id));
+        stringRedisTemplate.opsForSet().remove(PROCESSING_KEY, String.valueOf(id));
+    }
+
+    private String generateKey(Long key) {
+        return String.format("stock:%s", key);
+    }
+}
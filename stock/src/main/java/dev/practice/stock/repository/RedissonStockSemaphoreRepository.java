@@ -0,0 +1,97 @@
+package dev.practice.stock.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RSemaphore;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+public class RedissonStockSemaphoreRepository {
+
+    /**
+     * 재고 수량을 Redisson RSemaphore 의 permit 으로 저장한다.
+     *
+     * - key = stock:semaphore:{stock id}, permit 수 = 재고 수량
+     * - tryAcquire(permits) 는 permit 이 충분할 때만 감소시키는 lua script 하나로 실행된다. (대기하지 않는다.)
+     * - 락이 아니므로 lease(점유 시간)도, 해제 요청도 없다.
+     *
+     * 참고
+     * - permit 은 int 이므로 재고 수량은 Integer.MAX_VALUE 를 넘을 수 없다.
+     * - 없는 semaphore 는 permit 이 0 인 것처럼 동작하므로, 적재 여부는 exists 로 따로 확인한다.
+     */
+
+    private static final String KEY_PREFIX = "stock:semaphore:";
+
+    private final RedissonClient redissonClient;
+
+    public boolean tryAcquire(Long id, int permits) {
+        return semaphore(id).tryAcquire(permits);
+    }
+
+    public boolean exists(Long id) {
+        return semaphore(id).isExists();
+    }
+
+    /**
+     * 재고 수량을 semaphore 로 적재한다. 이미 있으면 덮어쓰지 않는다.
+     *
+     * @return 적재했으면 true
+     */
+    public boolean load(Long id, Long quantity) {
+        if (quantity > Integer.MAX_VALUE)
+            throw new IllegalStateException("semaphore 재고는 " + Integer.MAX_VALUE + " 를 넘을 수 없습니다. id = " + id);
+
+        return semaphore(id).trySetPermits(quantity.intValue());
+    }
+
+    public Long getQuantity(Long id) {
+        String permits = redissonClient.<String>getBucket(key(id), StringCodec.INSTANCE).get();
+        return permits != null ? Long.valueOf(permits) : null;
+    }
+
+    /**
+     * 여러 재고의 수량을 batch(파이프라인) 한번으로 조회한다.
+     *
+     * @return ids 순서대로, 없는 semaphore 는 null
+     */
+    public List<Long> getQuantities(Collection<Long> ids) {
+        RBatch batch = redissonClient.createBatch();
+        for (Long id : ids) {
+            batch.<String>getBucket(key(id), StringCodec.INSTANCE).getAsync();
+        }
+        BatchResult<?> result = batch.execute();
+
+        List<Long> quantities = new ArrayList<>(ids.size());
+        for (Object permits : result.getResponses()) {
+            quantities.add(permits != null ? Long.valueOf(permits.toString()) : null);
+        }
+        return quantities;
+    }
+
+    // 적재되어 있는 모든 재고 id (SCAN)
+    public List<Long> findAllIds() {
+        return redissonClient.getKeys().getKeysStreamByPattern(KEY_PREFIX + "*")
+                .map(key -> Long.valueOf(key.substring(KEY_PREFIX.length())))
+                .toList();
+    }
+
+    public void delete(Long id) {
+        semaphore(id).delete();
+    }
+
+    private RSemaphore semaphore(Long id) {
+        return redissonClient.getSemaphore(key(id));
+    }
+
+    private String key(Long id) {
+        return KEY_PREFIX + id;
+    }
+}
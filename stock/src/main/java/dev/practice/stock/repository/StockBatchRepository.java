@@ -0,0 +1,59 @@
+package dev.practice.stock.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@RequiredArgsConstructor
+@Repository
+public class StockBatchRepository {
+
+    /**
+     * 메모리에서 관리하는 재고 수량을 JDBC batch update 로 한번에 반영한다.
+     *
+     * - StockRepository.updateQuantityIfLower 와 같은 조건(quantity > ?)이므로 여러번 반영해도 결과가 같다. (멱등)
+     * - JPA 를 거치지 않으므로 영속성 컨텍스트, 엔티티 조회 없이 update 문만 보낸다.
+     * - 트랜잭션은 호출하는 쪽에서 연다. (batch 하나를 하나의 트랜잭션으로)
+     *
+     * 참고
+     * - 감소 전용이다. 메모리의 수량이 DB 보다 크면(입고 등) 반영되지 않는다. (affected row 0)
+     * - datasource url 의 rewriteBatchedStatements=true 로 batch 를 요청 몇 번으로 묶어 보낸다.
+     * - 이때 Connector/J 는 문장 별 affected row 대신 Statement.SUCCESS_NO_INFO(-2) 를 돌려줄 수 있다. (isUpdated 참고)
+     */
+
+    private static final String UPDATE_IF_LOWER_SQL = "update stock set quantity = ? where id = ? and quantity > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return 재고 별 affected row 수, 이미 같은 수량으로 반영된 재고는 0, 알 수 없으면 Statement.SUCCESS_NO_INFO
+     */
+    public int[] updateQuantitiesIfLower(long[] ids, long[] quantities, int size) {
+        return jdbcTemplate.batchUpdate(UPDATE_IF_LOWER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, quantities[i]);
+                ps.setLong(2, ids[i]);
+                ps.setLong(3, quantities[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return size;
+            }
+        });
+    }
+
+    /**
+     * updateQuantitiesIfLower 결과로 수량이 바뀌었을 수 있는지
+     * - 알 수 없는 경우(SUCCESS_NO_INFO)도 바뀐 것으로 본다. (캐시 무효화 등이 빠지는 것보다 한번 더 하는 것이 낫다.)
+     */
+    public static boolean isUpdated(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+}
@@ -0,0 +1,16 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.domain.StockCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface StockCheckpointRepository extends JpaRepository<StockCheckpoint, String> {
+
+    /**
+     * checkpoint 를 앞으로만 옮긴다. 늦게 도착한 이전 sequence 는 무시한다.
+     */
+    @Modifying
+    @Query("update StockCheckpoint c set c.sequence = :sequence where c.name = :name and c.sequence < :sequence")
+    int advance(String name, Long sequence);
+}
@@ -0,0 +1,33 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.service.StockReadService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@RequiredArgsConstructor
+public class StockInvalidationSubscriber implements MessageListener {
+
+    /**
+     * stock-invalidate 채널을 구독하여, 다른 노드에서 재고가 감소하면 near-cache 를 비운다.
+     *
+     * - 메시지는 재고 id 를 쉼표로 이은 것이다. (발행하는 쪽에서 모아서 보낸다. StockReadService 참고)
+     * - 자신이 발행한 메시지도 돌아오지만, 이미 비운 캐시를 한번 더 비울 뿐이다.
+     * - 메시지를 놓치면(pub/sub 은 전달 보장을 하지 않음) 캐시 만료 시간 까지 이전 값이 보일 수 있다.
+     */
+
+    public static final String INVALIDATE_CHANNEL = "stock-invalidate";
+
+    private final StockReadService stockReadService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        for (String id : new String(message.getBody(), StandardCharsets.UTF_8).split(",")) {
+            stockReadService.evict(Long.valueOf(id));
+        }
+    }
+}
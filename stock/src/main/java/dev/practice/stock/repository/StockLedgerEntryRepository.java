@@ -0,0 +1,18 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.domain.StockLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface StockLedgerEntryRepository extends JpaRepository<StockLedgerEntry, Long> {
+
+    // (stock_id, id) 인덱스 범위만 읽는다.
+    @Query("select coalesce(sum(e.delta), 0) from StockLedgerEntry e where e.stockId = :stockId and e.id > :afterId")
+    Long sumDeltaAfter(Long stockId, Long afterId);
+
+    @Query("select coalesce(sum(e.delta), 0) from StockLedgerEntry e where e.stockId = :stockId and e.id > :afterId and e.id <= :toId")
+    Long sumDeltaBetween(Long stockId, Long afterId, Long toId);
+
+    @Query("select coalesce(max(e.id), 0) from StockLedgerEntry e where e.stockId = :stockId")
+    Long findLastIdByStockId(Long stockId);
+}
@@ -4,8 +4,11 @@ import dev.practice.stock.domain.Stock;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface StockRepository extends JpaRepository<Stock, Long> {
@@ -13,4 +16,39 @@ public interface StockRepository extends JpaRepository<Stock, Long> {
     @Lock(value = LockModeType.PESSIMISTIC_WRITE)
     @Query("select s from Stock s where s.id = :id")
     Optional<Stock> findByIdWithPessimisticLock(Long id);
+
+    /**
+     * 여러 재고를 select ... for update 한번으로 조회한다.
+     * - order by id 로 PK 순서대로 락을 획득하므로, 여러 row 를 잠그는 트랜잭션끼리 데드락이 생기지 않는다.
+     */
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Stock s where s.id in :ids order by s.id")
+    List<Stock> findAllByIdInWithPessimisticLock(Collection<Long> ids);
+
+    /**
+     * 조회 없이 update 문 하나로 재고를 감소시킨다.
+     * - where 절의 quantity >= :quantity 조건으로 재고 부족을 막는다.
+     * - 반환값(affected row 수)이 0 이면 재고가 부족하거나 존재하지 않는 재고이다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity where s.id = :id and s.quantity >= :quantity")
+    int decreaseQuantity(Long id, Long quantity);
+
+    // 같은 트랜잭션에서 변경한 엔티티(ex. 예약 상태)가 clear 로 버려지지 않도록 먼저 flush 한다.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity + :quantity where s.id = :id")
+    int increaseQuantity(Long id, Long quantity);
+
+    /**
+     * 외부(redis 등)에서 관리하는 재고 수량을 DB 에 반영한다.
+     * - 해당 모드에서 재고는 감소만 하므로, 현재 값보다 작을 때만 덮어쓴다.
+     * - 같은 값을 여러번 반영하거나, 늦게 도착한 이전 값을 반영해도 결과가 같다. (멱등)
+     *
+     * 참고
+     * - 감소 전용이다. 외부 수량이 DB 보다 커지는 변경(입고, 예약 취소 등)은 이 메서드로 반영되지 않고 조용히 무시된다.
+     * - 입고는 DB 에 직접 반영한 뒤, 외부 수량을 버리고 DB 에서 다시 적재해야 한다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = :quantity where s.id = :id and s.quantity > :quantity")
+    int updateQuantityIfLower(Long id, Long quantity);
 }
@@ -1,7 +1,20 @@
 package dev.practice.stock.repository;
 
 import dev.practice.stock.domain.StockWithVersion;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
 
 public interface StockRepositoryWithOptimisticLock extends JpaRepository<StockWithVersion, Long> {
+
+    /**
+     * StockWithVersion 을 select ... for update 로 조회한다.
+     * - 업데이트 시 version 도 함께 증가하므로, 같은 row 를 낙관적 락으로 처리하는 요청과 섞여도 정합성이 유지된다.
+     */
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from StockWithVersion s where s.id = :id")
+    Optional<StockWithVersion> findByIdWithPessimisticLock(Long id);
 }
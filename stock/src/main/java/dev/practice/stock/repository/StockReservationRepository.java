@@ -0,0 +1,22 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.domain.StockReservation;
+import dev.practice.stock.domain.StockReservationStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // 확정, 취소, 만료가 동시에 일어나도 하나만 반영되도록 잠근다.
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from StockReservation r where r.id = :id")
+    Optional<StockReservation> findByIdWithPessimisticLock(Long id);
+
+    // 복구용, (status, id) 인덱스로 id 순서대로 나눠서 읽는다.
+    List<StockReservation> findTop1000ByStatusAndIdGreaterThanOrderById(StockReservationStatus status, Long id);
+}
@@ -0,0 +1,40 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.domain.StockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StockShardRepository extends JpaRepository<StockShard, Long> {
+
+    /**
+     * 다른 트랜잭션이 잠그지 않았고, 수량이 충분한 shard 하나를 잠근다.
+     * - skip locked : 이미 잠긴 row 는 기다리지 않고 건너뛴다. (MySQL 8.0 부터 지원)
+     * - 모든 요청이 같은 shard 부터 고르지 않도록 startShardNo 부터 찾는다.
+     */
+    @Query(value = "select * from stock_shard " +
+            "where stock_id = :stockId and shard_no >= :startShardNo and quantity >= :quantity " +
+            "order by shard_no limit 1 for update skip locked", nativeQuery = true)
+    Optional<StockShard> findAvailableFromSkipLocked(Long stockId, int startShardNo, Long quantity);
+
+    @Query(value = "select * from stock_shard " +
+            "where stock_id = :stockId and shard_no < :endShardNo and quantity >= :quantity " +
+            "order by shard_no limit 1 for update skip locked", nativeQuery = true)
+    Optional<StockShard> findAvailableBeforeSkipLocked(Long stockId, int endShardNo, Long quantity);
+
+    // 모든 shard 를 shard 번호 순서대로 잠근다. (순서가 같으므로 데드락이 생기지 않는다.)
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from StockShard s where s.stockId = :stockId order by s.shardNo")
+    List<StockShard> findAllByStockIdWithPessimisticLock(Long stockId);
+
+    @Query("select coalesce(sum(s.quantity), 0) from StockShard s where s.stockId = :stockId")
+    Long sumQuantityByStockId(Long stockId);
+
+    // 잠그지 않고 읽는다. (shard 하나로 감소할 수 있는지 확인하는 용도)
+    @Query("select coalesce(max(s.quantity), 0) from StockShard s where s.stockId = :stockId")
+    Long maxQuantityByStockId(Long stockId);
+}
@@ -0,0 +1,25 @@
+package dev.practice.stock.repository;
+
+import dev.practice.stock.domain.StockSnapshot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    /**
+     * 공유 락 (select ... for share)
+     * - ledger 에 insert 하는 트랜잭션끼리는 서로 기다리지 않는다.
+     * - compactor 의 배타 락과만 충돌한다.
+     */
+    @Lock(value = LockModeType.PESSIMISTIC_READ)
+    @Query("select s from StockSnapshot s where s.stockId = :stockId")
+    Optional<StockSnapshot> findByStockIdWithSharedLock(Long stockId);
+
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from StockSnapshot s where s.stockId = :stockId")
+    Optional<StockSnapshot> findByStockIdWithPessimisticLock(Long stockId);
+}
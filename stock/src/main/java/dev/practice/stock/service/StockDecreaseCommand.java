@@ -0,0 +1,23 @@
+package dev.practice.stock.service;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 주문 한 줄 (재고 id, 감소 수량)
+ */
+public record StockDecreaseCommand(Long id, Long quantity) {
+
+    /**
+     * 같은 재고 id 는 수량을 합치고, 재고 id 오름차순으로 정렬한다.
+     * - 여러 락을 획득할 때 모든 요청이 같은 순서(id 오름차순)로 획득해야 데드락이 생기지 않는다.
+     */
+    public static SortedMap<Long, Long> sumById(List<StockDecreaseCommand> commands) {
+        SortedMap<Long, Long> quantities = new TreeMap<>();
+        for (StockDecreaseCommand command : commands) {
+            quantities.merge(command.id(), command.quantity(), Long::sum);
+        }
+        return quantities;
+    }
+}
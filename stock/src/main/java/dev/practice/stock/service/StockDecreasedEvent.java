@@ -0,0 +1,8 @@
+package dev.practice.stock.service;
+
+/**
+ * Stock row 의 수량이 바뀌었다. (StockReadService 의 near-cache 무효화용)
+ * - 트랜잭션 안에서 발행하면 commit 이후에 처리된다.
+ */
+public record StockDecreasedEvent(Long id) {
+}
@@ -0,0 +1,173 @@
+package dev.practice.stock.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockInvalidationSubscriber;
+import dev.practice.stock.repository.StockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+@Slf4j
+@Service
+public class StockReadService {
+
+    /**
+     * 재고 조회용 near-cache (애플리케이션 메모리)
+     *
+     * - 상품 페이지의 재고 조회는 감소보다 훨씬 많고, 매번 DB 를 조회하면 감소 트랜잭션과 커넥션, buffer pool 을 두고 경쟁한다.
+     * - 조회한 재고 수량을 크기(maximum-size)와 시간(ttl-millis)으로 제한된 Caffeine 캐시에 둔다.
+     * - 조회하는 쪽에서 허용할 지연(maxStalenessMillis)을 고른다. 캐시 값이 그보다 오래되었으면 DB 에서 다시 읽는다.
+     * - 주문 직전 확인처럼 정확한 값이 필요하면 getQuantityAuthoritative 로 DB 에서 바로 읽는다.
+     *
+     * 무효화
+     * - Stock 수량을 바꾼 서비스가 StockDecreasedEvent 를 발행하면, commit 이후에 로컬 캐시를 비우고
+     * - redis stock-invalidate 채널로 재고 id 를 발행해 다른 노드의 캐시도 비운다. (StockInvalidationSubscriber)
+     * - 발행은 별도 스레드(publisher)에서 한다. commit 한 스레드는 분산 락을 잡은 채일 수 있으므로 redis 왕복을 기다리지 않는다.
+     * - 발행을 기다리는 동안 쌓인 재고 id 는 모아서 메시지 하나로 보낸다. (ex. "1,2,3")
+     *
+     * 참고
+     * - DB 조회 도중에 무효화가 오면, 조회한 값은 이전 값일 수 있으므로 캐시에 넣지 않는다. (재고 id 의 stripe 별 무효화 횟수로 판단)
+     * - 확인과 캐시에 넣는 사이에 무효화가 오면, 넣은 뒤 다시 확인해서 지운다.
+     * - Stock 테이블만 대상이다. (StockWithVersion, StockShard, redis 재고는 캐시하지 않는다.)
+     */
+
+    private static final int STRIPES = 64;
+
+    private final StockRepository stockRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<Long, CachedQuantity> cache;
+
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    private final Set<Long> pendingInvalidations = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor();
+
+    public StockReadService(StockRepository stockRepository,
+                            StringRedisTemplate redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${stock.near-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${stock.near-cache.ttl-millis:1000}") long ttlMillis) {
+        this.stockRepository = stockRepository;
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stock.near-cache");
+    }
+
+    /**
+     * @param maxStalenessMillis 허용할 지연, 캐시 값이 이보다 오래되었으면 DB 에서 읽는다. (ttl-millis 보다 오래된 값은 이미 만료되어 없다.)
+     */
+    public Long getQuantity(Long id, long maxStalenessMillis) {
+
+        CachedQuantity cached = cache.getIfPresent(id);
+        if (cached != null && System.nanoTime() - cached.loadedAt <= TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis))
+            return cached.quantity;
+
+        return getQuantityAuthoritative(id);
+    }
+
+    // DB 에서 읽고, 읽은 값으로 캐시를 갱신한다.
+    public Long getQuantityAuthoritative(Long id) {
+
+        int stripe = stripe(id);
+        long seen = invalidations.get(stripe);
+        long loadedAt = System.nanoTime();
+
+        Long quantity = stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+
+        if (invalidations.get(stripe) == seen) {
+            cache.put(id, new CachedQuantity(quantity, loadedAt));
+
+            // 확인한 뒤 넣기 전에 무효화가 지나갔다면, 방금 넣은 이전 값을 지운다.
+            if (invalidations.get(stripe) != seen) {
+                cache.invalidate(id);
+            }
+        }
+
+        return quantity;
+    }
+
+    public void evict(Long id) {
+        invalidations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    /**
+     * 트랜잭션 안에서 발행된 이벤트는 commit 이후에, 트랜잭션 밖에서 발행된 이벤트는 바로 처리한다.
+     * - rollback 되면 수량이 바뀌지 않았으므로 처리하지 않는다.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockDecreased(StockDecreasedEvent event) {
+        evict(event.id());
+
+        pendingInvalidations.add(event.id());
+        if (publishScheduled.compareAndSet(false, true)) {
+            try {
+                publisher.execute(this::publishInvalidations);
+            } catch (RejectedExecutionException e) {
+                // 종료 중이다. 다른 노드는 캐시 만료 시간 까지 이전 값을 볼 수 있다.
+                publishScheduled.set(false);
+            }
+        }
+    }
+
+    private void publishInvalidations() {
+
+        // 모으기 전에 풀어야, 모으는 도중에 추가된 id 가 다음 발행으로 넘어간다.
+        publishScheduled.set(false);
+
+        List<String> ids = new ArrayList<>();
+        for (Iterator<Long> iterator = pendingInvalidations.iterator(); iterator.hasNext(); ) {
+            ids.add(String.valueOf(iterator.next()));
+            iterator.remove();
+        }
+
+        if (ids.isEmpty())
+            return;
+
+        try {
+            redisTemplate.convertAndSend(StockInvalidationSubscriber.INVALIDATE_CHANNEL, String.join(",", ids));
+        } catch (RuntimeException e) {
+            // 감소는 이미 commit 되었다. 다른 노드는 캐시 만료 시간 까지 이전 값을 볼 수 있다.
+            log.warn("stock invalidate publish failed, ids = {}", ids, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        publisher.shutdown();
+        publisher.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private int stripe(Long id) {
+        return Math.floorMod(Long.hashCode(id), STRIPES);
+    }
+
+    private record CachedQuantity(Long quantity, long loadedAt) {
+    }
+}
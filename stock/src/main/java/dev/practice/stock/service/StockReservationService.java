@@ -0,0 +1,238 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.StockReservation;
+import dev.practice.stock.domain.StockReservationStatus;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.repository.StockReservationRepository;
+import dev.practice.stock.support.HierarchicalTimingWheel;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StockReservationService {
+
+    /**
+     * 2단계 재고 차감 (예약 -> 확정 or 취소/만료)
+     *
+     * - 결제가 진행되는 동안 재고를 잡아둔다. 예약할 때 조건부 update 문으로 Stock.quantity 를 감소시키고 예약 row 를 남긴다.
+     * - 결제가 끝나면 확정(confirm), 실패하면 취소(cancel) 한다. 취소하면 수량을 반환한다.
+     * - 확정도 취소도 되지 않은 예약은 ttl 이 지나면 만료되고 수량을 반환한다.
+     *
+     * 만료
+     * - 만료 시각을 찾으려고 예약 테이블을 주기적으로 조회하지 않는다.
+     * - 예약마다 HierarchicalTimingWheel 에 만료 작업을 등록한다. (등록, 취소, 만료 모두 O(1))
+     * - 확정/취소되면 등록한 만료 작업을 취소한다.
+     * - 휠은 메모리에 있으므로, 애플리케이션이 시작될 때 RESERVED 인 예약을 읽어 다시 등록한다. (recover)
+     *
+     * 참고
+     * - 확정, 취소, 만료는 예약 row 를 비관적 락으로 잠그고 상태를 확인하므로, 동시에 일어나도 하나만 반영된다.
+     * - 만료 시각이 지난 예약은 만료 작업이 아직 실행되지 않았어도 확정할 수 없다.
+     * - 여러 노드가 같은 예약의 만료 작업을 가지고 있어도(재시작 복구 등) 한번만 반환된다.
+     */
+
+    private static final String STRATEGY = "reservation";
+    private static final long NOT_FOUND = -1L;
+    private static final long RETRY_DELAY_MILLIS = 1000L;
+
+    private final StockRepository stockRepository;
+    private final StockReservationRepository stockReservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockMetrics stockMetrics;
+    private final long ttlMillis;
+
+    private final ExecutorService expiryExecutor;
+    private final HierarchicalTimingWheel timingWheel;
+
+    // 예약 id 별 만료 작업, 확정/취소 시 만료 작업을 취소하기 위해 가지고 있다.
+    private final ConcurrentHashMap<Long, HierarchicalTimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+
+    public StockReservationService(StockRepository stockRepository,
+                                   StockReservationRepository stockReservationRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   StockMetrics stockMetrics,
+                                   @Value("${stock.reservation.ttl-millis:600000}") long ttlMillis,
+                                   @Value("${stock.reservation.tick-millis:100}") long tickMillis,
+                                   @Value("${stock.reservation.wheel-size:512}") int wheelSize,
+                                   @Value("${stock.reservation.expiry-threads:2}") int expiryThreads) {
+        this.stockRepository = stockRepository;
+        this.stockReservationRepository = stockReservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.stockMetrics = stockMetrics;
+        this.ttlMillis = ttlMillis;
+        this.expiryExecutor = Executors.newFixedThreadPool(expiryThreads);
+        this.timingWheel = new HierarchicalTimingWheel("stock-reservation-expiry", tickMillis, wheelSize, expiryExecutor);
+    }
+
+    /**
+     * 수량이 0 이하면 트랜잭션을 열기 전에 거절한다. (음수로 예약하면 취소, 만료 때 재고가 오히려 줄어든다.)
+     *
+     * @return 예약 id
+     */
+    public Long reserve(Long stockId, Long quantity) {
+
+        if (quantity == null || quantity <= 0)
+            throw new IllegalArgumentException("예약 수량은 양수여야 합니다. quantity = " + quantity);
+
+        StockReservation reservation = transactionTemplate.execute(status -> {
+            if (stockRepository.decreaseQuantity(stockId, quantity) == 0) {
+                if (!stockRepository.existsById(stockId))
+                    throw new NoSuchElementException("재고가 존재하지 않습니다.");
+
+                stockMetrics.incrementInsufficient(STRATEGY, stockId);
+                throw new IllegalArgumentException("재고가 부족합니다.");
+            }
+
+            eventPublisher.publishEvent(new StockDecreasedEvent(stockId));
+
+            return stockReservationRepository.save(StockReservation.builder()
+                    .stockId(stockId)
+                    .quantity(quantity)
+                    .expiresAt(System.currentTimeMillis() + ttlMillis)
+                    .build());
+        });
+
+        // commit 이후에 등록한다. 등록 전에 종료되면 recover 에서 등록된다.
+        scheduleExpiry(reservation.getId(), ttlMillis);
+        return reservation.getId();
+    }
+
+    public void confirm(Long reservationId) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            StockReservation reservation = stockReservationRepository.findByIdWithPessimisticLock(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("예약이 존재하지 않습니다."));
+
+            if (reservation.getStatus() == StockReservationStatus.RESERVED
+                    && reservation.isExpired(System.currentTimeMillis()))
+                throw new IllegalArgumentException("만료된 예약입니다.");
+
+            reservation.confirm();
+        });
+
+        cancelExpiry(reservationId);
+    }
+
+    public void cancel(Long reservationId) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            StockReservation reservation = stockReservationRepository.findByIdWithPessimisticLock(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("예약이 존재하지 않습니다."));
+
+            reservation.cancel();
+            restore(reservation);
+        });
+
+        cancelExpiry(reservationId);
+    }
+
+    /**
+     * 만료 작업, RESERVED 인 예약만 만료시키고 수량을 반환한다.
+     *
+     * @return 만료시켰으면 true, 이미 처리되었으면 false
+     */
+    public boolean expire(Long reservationId) {
+
+        timeouts.remove(reservationId);
+
+        long remaining = transactionTemplate.execute(status -> {
+            StockReservation reservation = stockReservationRepository.findByIdWithPessimisticLock(reservationId).orElse(null);
+
+            if (reservation == null || reservation.getStatus() != StockReservationStatus.RESERVED)
+                return NOT_FOUND;
+
+            long now = System.currentTimeMillis();
+            if (!reservation.isExpired(now))
+                return reservation.getExpiresAt() - now;
+
+            reservation.expire();
+            restore(reservation);
+            return 0L;
+        });
+
+        // 휠의 시계와 DB 의 만료 시각이 어긋나면(tick 내림, 재시작 복구) 남은 시간 만큼 다시 등록한다.
+        if (remaining > 0) {
+            scheduleExpiry(reservationId, remaining);
+        }
+        return remaining == 0L;
+    }
+
+    /**
+     * 애플리케이션 시작 시 RESERVED 인 예약의 만료 작업을 다시 등록한다.
+     * - 이미 만료 시각이 지난 예약은 바로 만료된다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+
+        long now = System.currentTimeMillis();
+        long lastId = 0L;
+        int recovered = 0;
+
+        List<StockReservation> reservations;
+        while (!(reservations = stockReservationRepository
+                .findTop1000ByStatusAndIdGreaterThanOrderById(StockReservationStatus.RESERVED, lastId)).isEmpty()) {
+
+            for (StockReservation reservation : reservations) {
+                scheduleExpiry(reservation.getId(), reservation.getExpiresAt() - now);
+            }
+
+            lastId = reservations.get(reservations.size() - 1).getId();
+            recovered += reservations.size();
+        }
+
+        log.info("stock reservation recover, scheduled = {}", recovered);
+    }
+
+    public int pendingExpiryCount() {
+        return timingWheel.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        timingWheel.close();
+        expiryExecutor.shutdown();
+        expiryExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void restore(StockReservation reservation) {
+        stockRepository.increaseQuantity(reservation.getStockId(), reservation.getQuantity());
+        eventPublisher.publishEvent(new StockDecreasedEvent(reservation.getStockId()));
+    }
+
+    private void scheduleExpiry(Long reservationId, long delayMillis) {
+        timeouts.put(reservationId, timingWheel.schedule(delayMillis, () -> expireQuietly(reservationId)));
+    }
+
+    private void cancelExpiry(Long reservationId) {
+        HierarchicalTimingWheel.Timeout timeout = timeouts.remove(reservationId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void expireQuietly(Long reservationId) {
+        try {
+            expire(reservationId);
+        } catch (RuntimeException e) {
+            log.warn("stock reservation expire failed, retry after {}ms, id = {}", RETRY_DELAY_MILLIS, reservationId, e);
+            scheduleExpiry(reservationId, RETRY_DELAY_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.repository.RedissonStockSemaphoreRepository;
+import dev.practice.stock.repository.StockRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StockSemaphoreWriteBehindService {
+
+    /**
+     * semaphore 로 감소된 재고를 비동기로 모아서 DB 에 반영한다. (write-behind)
+     *
+     * - 감소한 재고 id 를 노드 메모리의 dirty set 에 모아두고, 주기적으로 batch size 만큼 하나의 트랜잭션으로 반영한다.
+     * - 반영할 수량은 redis batch 한번으로 semaphore 의 현재 permit 수를 읽는다.
+     * - StockWriteBehindService 와 같이 감소량(delta)이 아니라 현재 수량을 updateQuantityIfLower 로 반영한다.
+     * - 같은 id 를 여러 노드가 여러번 반영해도, 늦게 반영해도 결과가 같다.
+     * - 반영에 실패한 id 는 dirty set 으로 되돌려 다음 주기에 다시 반영한다.
+     *
+     * 재시작 후 정합성 맞추기 (reconcile)
+     * - dirty set 은 노드 메모리에 있으므로 반영 전에 종료되면 사라진다.
+     * - 애플리케이션 시작 시 redis 에 있는 모든 semaphore 재고를 dirty 로 표시하고 반영한다.
+     */
+
+    private final RedissonStockSemaphoreRepository redissonStockSemaphoreRepository;
+    private final StockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long intervalMillis;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    public StockSemaphoreWriteBehindService(RedissonStockSemaphoreRepository redissonStockSemaphoreRepository,
+                                            StockRepository stockRepository,
+                                            TransactionTemplate transactionTemplate,
+                                            ApplicationEventPublisher eventPublisher,
+                                            @Value("${stock.semaphore.batch-size:500}") int batchSize,
+                                            @Value("${stock.semaphore.flush-interval-millis:100}") long intervalMillis) {
+        this.redissonStockSemaphoreRepository = redissonStockSemaphoreRepository;
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+        executor.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void reconcile() {
+        List<Long> ids = redissonStockSemaphoreRepository.findAllIds();
+        dirty.addAll(ids);
+        log.info("semaphore write-behind reconcile, ids = {}, flushed = {}", ids.size(), flush());
+    }
+
+    public void markDirty(Long id) {
+        dirty.add(id);
+    }
+
+    /**
+     * @return DB 에 반영한 재고 id 수
+     */
+    public synchronized int flush() {
+
+        int flushed = 0;
+        List<Long> batch;
+
+        while (!(batch = drain()).isEmpty()) {
+
+            List<Long> ids = batch;
+            try {
+                List<Long> quantities = redissonStockSemaphoreRepository.getQuantities(ids);
+
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < ids.size(); i++) {
+                        // semaphore 가 지워졌으면 반영하지 않는다.
+                        if (quantities.get(i) != null
+                                && stockRepository.updateQuantityIfLower(ids.get(i), quantities.get(i)) == 1) {
+                            eventPublisher.publishEvent(new StockDecreasedEvent(ids.get(i)));
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                dirty.addAll(ids);
+                throw e;
+            }
+
+            flushed += ids.size();
+        }
+
+        return flushed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        flushQuietly();
+    }
+
+    // 꺼내는 도중 다시 dirty 가 된 id 는 다음 batch 에서 반영된다.
+    private List<Long> drain() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        Iterator<Long> iterator = dirty.iterator();
+        while (ids.size() < batchSize && iterator.hasNext()) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        return ids;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("semaphore write-behind flush 실패", e);
+        }
+    }
+}
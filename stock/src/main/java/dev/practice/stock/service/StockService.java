@@ -3,20 +3,27 @@ package dev.practice.stock.service;
 import dev.practice.stock.domain.Stock;
 import dev.practice.stock.repository.StockRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+
 @Service
 @RequiredArgsConstructor
 public class StockService {
 
     private final StockRepository stockRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * requires_new 를 사용한 이유
      * - StockFacadeWithNamedLock 에서 상위에 @Transactional 과 분리하기 위해서이다.
      * - named lock 은 원래 실제 데이터와 별도의 datasource 로 관리되어야한다.
+     * - 현재 StockFacadeWithNamedLock 은 NamedLockExecutor 로 별도의 datasource 를 사용하므로 상위 트랜잭션이 없다.
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void decreaseStock(Long id, Long quantity) {
@@ -29,6 +36,28 @@ public class StockService {
 
         stock.decrease(quantity);
 
+        eventPublisher.publishEvent(new StockDecreasedEvent(id));
+
 //        stockRepository.saveAndFlush(stock);
     }
+
+    /**
+     * 여러 재고를 하나의 트랜잭션에서 감소시킨다. (all-or-nothing)
+     * - 락은 호출하는 facade 에서 재고 id 순서대로 획득한다.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void decreaseStocks(List<StockDecreaseCommand> commands) {
+
+        SortedMap<Long, Long> quantities = StockDecreaseCommand.sumById(commands);
+
+        List<Stock> stocks = stockRepository.findAllById(quantities.keySet());
+
+        if (stocks.size() != quantities.size())
+            throw new NoSuchElementException("재고가 존재하지 않습니다.");
+
+        for (Stock stock : stocks) {
+            stock.decrease(quantities.get(stock.getId()));
+            eventPublisher.publishEvent(new StockDecreasedEvent(stock.getId()));
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.StockWithVersion;
+import dev.practice.stock.repository.StockRepositoryWithOptimisticLock;
+import dev.practice.stock.support.StockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class StockServiceWithAdaptiveLock {
+
+    private static final String STRATEGY = "adaptive";
+
+    private final StockRepositoryWithOptimisticLock stockRepositoryWithOptimisticLock;
+    private final StockMetrics stockMetrics;
+
+    /**
+     * 같은 StockWithVersion row 를 낙관적 락, 비관적 락 두가지 방식으로 감소시킨다.
+     * - 어떤 방식을 쓸지는 StockFacadeWithAdaptiveLock 이 재고 id 별 충돌률을 보고 정한다.
+     * - 비관적 락으로 감소해도 version 은 증가하므로, 모드가 바뀌는 도중에 두 방식이 섞여도 된다.
+     */
+    @Transactional
+    public void decreaseStockWithOptimisticLock(Long id, Long quantity) {
+
+        stockMetrics.timeTransaction(STRATEGY, id);
+
+        StockWithVersion stockWithVersion = stockRepositoryWithOptimisticLock.findById(id).orElseThrow();
+
+        decrease(stockWithVersion, quantity);
+    }
+
+    @Transactional
+    public void decreaseStockWithPessimisticLock(Long id, Long quantity) {
+
+        stockMetrics.timeTransaction(STRATEGY, id);
+
+        long waitStart = System.nanoTime();
+        StockWithVersion stockWithVersion = stockRepositoryWithOptimisticLock.findByIdWithPessimisticLock(id).orElseThrow();
+        stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+        stockMetrics.timeLockHold(STRATEGY, id);
+
+        decrease(stockWithVersion, quantity);
+    }
+
+    private void decrease(StockWithVersion stockWithVersion, Long quantity) {
+        try {
+            stockWithVersion.decrease(quantity);
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, stockWithVersion.getId());
+            throw e;
+        }
+    }
+}
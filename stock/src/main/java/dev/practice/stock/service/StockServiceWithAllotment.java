@@ -0,0 +1,222 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class StockServiceWithAllotment {
+
+    /**
+     * 노드(애플리케이션) 마다 재고의 일부를 미리 할당(lease) 받아서, 로컬에서 감소시킨다.
+     *
+     * - 재고가 넉넉한 동안에는 대부분의 요청이 DB, redis 등 네트워크를 타지 않는다.
+     * - 할당은 조건부 update 문 하나로 Stock.quantity 에서 chunkSize 만큼 떼어온다.
+     * - 로컬 감소는 AtomicLong(primitive long) 의 CAS 로 처리한다. 락도, boxed Long 할당도 없다.
+     * - 로컬 수량이 부족하면 다시 할당 받는다. (refill)
+     * - 남은 할당량은 lease 만료 시, 애플리케이션 종료 시 DB 로 반납한다.
+     *
+     * 참고
+     * - DB 의 Stock.quantity 는 "아직 어느 노드에도 할당되지 않은 재고" 이다.
+     * - 품절 직전에는 DB 에 chunkSize 보다 적게 남으므로, 남은 만큼만 비관적 락으로 정확하게 떼어온다.
+     * - 다른 노드가 가진 할당량은 반납 전까지 보이지 않으므로, 전체 재고가 남아있어도 재고 부족이 날 수 있다. (lease 만료로 해소)
+     * - 애플리케이션이 비정상 종료되면 남은 할당량은 반납되지 않는다.
+     * - 반납 트랜잭션이 실패하면 남은 할당량을 로컬로 되돌리고, 다음 만료 검사에서 다시 반납한다.
+     */
+
+    private static final long RETIRED = -1L;
+    private static final String STRATEGY = "allotment";
+
+    private final StockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long chunkSize;
+    private final long leaseMillis;
+
+    private final ConcurrentHashMap<Long, Allotment> allotments = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expirer = Executors.newSingleThreadScheduledExecutor();
+
+    public StockServiceWithAllotment(StockRepository stockRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     StockMetrics stockMetrics,
+                                     ApplicationEventPublisher eventPublisher,
+                                     @Value("${stock.allotment.chunk-size:10}") long chunkSize,
+                                     @Value("${stock.allotment.lease-millis:30000}") long leaseMillis) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMetrics = stockMetrics;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.leaseMillis = leaseMillis;
+
+        long period = Math.max(1L, leaseMillis / 2);
+        expirer.scheduleWithFixedDelay(this::releaseExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void decreaseStock(Long id, Long quantity) {
+
+        long amount = quantity;
+
+        // 실패한 CAS, refill 횟수
+        for (int retries = 0; ; retries++) {
+            Allotment allotment = allotments.computeIfAbsent(id, Allotment::new);
+            long current = allotment.remaining.get();
+
+            // 반납된 할당은 버리고 새로 만든다.
+            if (current == RETIRED) {
+                allotments.remove(id, allotment);
+                continue;
+            }
+
+            if (current >= amount) {
+                if (allotment.remaining.compareAndSet(current, current - amount)) {
+                    stockMetrics.recordRetries(STRATEGY, id, retries);
+                    return;
+                }
+                continue;
+            }
+
+            if (!refill(allotment, amount)) {
+                stockMetrics.incrementInsufficient(STRATEGY, id);
+                throw new IllegalArgumentException("재고가 부족합니다.");
+            }
+        }
+    }
+
+    /**
+     * @return false 면 DB 에 남은 재고까지 할당받아도 부족한 경우
+     */
+    private boolean refill(Allotment allotment, long amount) {
+        synchronized (allotment) {
+            long current = allotment.remaining.get();
+
+            // 그 사이 다른 스레드가 반납했거나 채웠다.
+            if (current == RETIRED || current >= amount)
+                return true;
+
+            long leaseStart = System.nanoTime();
+            long leased = lease(allotment.id, Math.max(chunkSize, amount - current));
+            stockMetrics.recordTransaction(STRATEGY, allotment.id, leaseStart);
+            if (leased > 0) {
+                allotment.remaining.addAndGet(leased);
+                allotment.expiresAt = System.currentTimeMillis() + leaseMillis;
+            }
+
+            return current + leased >= amount;
+        }
+    }
+
+    private long lease(Long id, long amount) {
+        return transactionTemplate.execute(status -> {
+            eventPublisher.publishEvent(new StockDecreasedEvent(id));
+
+            if (stockRepository.decreaseQuantity(id, amount) == 1)
+                return amount;
+
+            // 품절 직전, 남은 만큼만 가져온다.
+            Stock stock = stockRepository.findByIdWithPessimisticLock(id).orElseThrow();
+            long taken = Math.min(stock.getQuantity(), amount);
+            stock.decrease(taken);
+            return taken;
+        });
+    }
+
+    private void release(Allotment allotment) {
+
+        long remaining;
+        synchronized (allotment) {
+            remaining = allotment.remaining.getAndSet(RETIRED);
+        }
+        allotments.remove(allotment.id, allotment);
+
+        if (remaining > 0) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    stockRepository.increaseQuantity(allotment.id, remaining);
+                    eventPublisher.publishEvent(new StockDecreasedEvent(allotment.id));
+                });
+            } catch (RuntimeException e) {
+                restore(allotment.id, remaining);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 반납하지 못한 할당량을 다시 로컬 할당량에 더한다.
+     * - 재고가 사라지지 않고 로컬 감소에 계속 쓰인다.
+     * - 바로 만료된 것으로 표시해서 다음 만료 검사에서 다시 반납한다.
+     */
+    private void restore(Long id, long amount) {
+        while (true) {
+            Allotment allotment = allotments.computeIfAbsent(id, Allotment::new);
+            synchronized (allotment) {
+                if (allotment.remaining.get() == RETIRED) {
+                    allotments.remove(id, allotment);
+                    continue;
+                }
+                allotment.remaining.addAndGet(amount);
+                allotment.expiresAt = 0L;
+                return;
+            }
+        }
+    }
+
+    private void releaseExpired() {
+        long now = System.currentTimeMillis();
+        // 반납에 실패해서 되돌린 할당은 이번 주기에 다시 보지 않도록 복사본을 순회한다.
+        List.copyOf(allotments.values()).stream()
+                .filter(allotment -> allotment.expiresAt < now)
+                .forEach(this::releaseQuietly);
+    }
+
+    private void releaseQuietly(Allotment allotment) {
+        try {
+            release(allotment);
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("allotment 반납 실패, id = {}", allotment.id, e);
+        }
+    }
+
+    public void releaseAll() {
+        allotments.values().forEach(this::release);
+    }
+
+    public long getLocalQuantity(Long id) {
+        Allotment allotment = allotments.get(id);
+        return allotment == null ? 0L : Math.max(0L, allotment.remaining.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expirer.shutdown();
+        releaseAll();
+    }
+
+    private static final class Allotment {
+
+        private final Long id;
+        private final AtomicLong remaining = new AtomicLong();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Allotment(Long id) {
+            this.id = id;
+        }
+    }
+}
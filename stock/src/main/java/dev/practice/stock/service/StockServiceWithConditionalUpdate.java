@@ -0,0 +1,54 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.NoSuchElementException;
+
+@Service
+@RequiredArgsConstructor
+public class StockServiceWithConditionalUpdate {
+
+    private static final String STRATEGY = "conditional";
+
+    private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 동시성 문제 해결을 위해 조건부 update 문 하나로 재고를 감소시킨다.
+     *
+     * 특징
+     * 1. 재고 조회 -> 애플리케이션에서 감소 -> 저장(read-modify-write) 하지 않는다.
+     * - update stock set quantity = quantity - ? where id = ? and quantity >= ?
+     * 2. DB 가 update 문을 수행하는 동안만 row 에 배타락이 걸린다. (조회 시점부터 락을 잡는 비관적 락보다 락 점유 시간이 짧다.)
+     * 3. 버전 충돌이 없으므로 낙관적 락처럼 재시도할 필요가 없다.
+     * 4. DB 에서 처리되므로 분산 애플리케이션 환경에서도 동시성 문제가 없고, facade 의 별도 락도 필요없다.
+     * 5. 재고 부족 여부는 affected row 수로 판단한다.
+     *
+     * 참고
+     * - 감소 로직이 단순한 산술 연산일 때만 사용할 수 있다. (Stock.decrease 의 도메인 로직을 DB 쿼리로 옮긴 셈이다.)
+     */
+    @Transactional
+    public void decreaseStock(Long id, Long quantity) {
+
+        stockMetrics.timeTransaction(STRATEGY, id);
+
+        int updated = stockRepository.decreaseQuantity(id, quantity);
+
+        if (updated == 0) {
+            // 실패한 경우에만 원인 구분을 위해 한번 더 조회한다.
+            if (!stockRepository.existsById(id))
+                throw new NoSuchElementException("재고가 존재하지 않습니다.");
+
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+
+        eventPublisher.publishEvent(new StockDecreasedEvent(id));
+    }
+}
@@ -0,0 +1,201 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class StockServiceWithGroupCommit {
+
+    /**
+     * 같은 재고에 대한 감소 요청을 모아서 하나의 트랜잭션으로 처리한다. (group commit)
+     *
+     * - 요청마다 트랜잭션을 열면, 같은 row 의 배타락(InnoDB row lock)을 요청 수 만큼 획득/해제 해야 한다.
+     * - 재고 id 별로 요청을 모아두고, window(ms) 가 지나거나 batch size 만큼 쌓이면 한번에 처리한다.
+     * - 하나의 트랜잭션에서 비관적 락으로 한번 조회하고, 도착 순서대로 감소시킨다.
+     * - 재고가 부족한 요청만 실패 처리하고, 나머지 요청은 그대로 반영한다. (부분 성공, 도착 순서 기준)
+     * - 각 요청의 결과는 commit 이후에 CompletableFuture 로 전달한다.
+     *
+     * 참고
+     * - 같은 재고의 flush 는 lane 단위로 직렬화되므로 도착 순서가 유지된다.
+     * - lane 마다 예약된 flush 는 최대 하나다. batch size 만큼 쌓여도 이미 예약된 flush 가 있으면 새로 예약하지 않는다.
+     * - 대기 중인 요청이 없는 lane 은 flush 이후에 제거한다. (한번씩만 요청된 재고의 lane 이 계속 남지 않는다.)
+     * - 비관적 락으로 조회하므로 분산 환경에서도 동시성 문제가 없다.
+     * - window 만큼 지연시간이 늘어나는 대신, hot 재고의 처리량은 "요청 당 commit" 에서 "batch 당 commit" 이 된다.
+     */
+
+    private static final String STRATEGY = "group_commit";
+
+    private final StockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    // 재고 id 별 대기열, 대기 중인 요청이 있는 재고 id 수 만큼만 남는다.
+    private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    public StockServiceWithGroupCommit(StockRepository stockRepository,
+                                       TransactionTemplate transactionTemplate,
+                                       StockMetrics stockMetrics,
+                                       ApplicationEventPublisher eventPublisher,
+                                       @Value("${stock.group-commit.window-millis:5}") long windowMillis,
+                                       @Value("${stock.group-commit.max-batch-size:100}") int maxBatchSize,
+                                       @Value("${stock.group-commit.threads:4}") int threads) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMetrics = stockMetrics;
+        this.eventPublisher = eventPublisher;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newScheduledThreadPool(threads);
+    }
+
+    public CompletableFuture<Void> decreaseStock(Long id, Long quantity) {
+
+        Pending pending = new Pending(quantity);
+
+        // lane 제거(retire)와 같은 bin lock 안에서 추가해야 제거된 lane 에 요청이 남지 않는다.
+        Lane lane = lanes.compute(id, (key, current) -> {
+            Lane target = current != null ? current : new Lane(key);
+            target.queue.add(pending);
+            target.size.incrementAndGet();
+            return target;
+        });
+
+        if (lane.scheduled.compareAndSet(false, true)) {
+            schedule(lane);
+        }
+
+        return pending.future;
+    }
+
+    private void schedule(Lane lane) {
+        if (lane.size.get() >= maxBatchSize) {
+            scheduler.execute(() -> flush(lane));
+        } else {
+            scheduler.schedule(() -> flush(lane), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    private void flush(Lane lane) {
+        synchronized (lane) {
+            lane.scheduled.set(false);
+
+            List<Pending> batch = new ArrayList<>();
+            Pending pending;
+            while (batch.size() < maxBatchSize && (pending = lane.queue.poll()) != null) {
+                batch.add(pending);
+            }
+            lane.size.addAndGet(-batch.size());
+
+            if (!batch.isEmpty()) {
+                apply(lane.id, batch);
+            }
+
+            // batch size 를 넘어서 남은 요청은 이어서 처리한다.
+            if (!lane.queue.isEmpty() && lane.scheduled.compareAndSet(false, true)) {
+                schedule(lane);
+            }
+
+            retire(lane);
+        }
+    }
+
+    private void retire(Lane lane) {
+        lanes.computeIfPresent(lane.id, (key, current) ->
+                current == lane && lane.size.get() == 0 && !lane.scheduled.get() ? null : current);
+    }
+
+    private void apply(Long id, List<Pending> batch) {
+
+        boolean[] results;
+        long transactionStart = System.nanoTime();
+        try {
+            results = transactionTemplate.execute(status -> {
+                long waitStart = System.nanoTime();
+                Stock stock = stockRepository.findByIdWithPessimisticLock(id).orElseThrow();
+                stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+                stockMetrics.timeLockHold(STRATEGY, id);
+
+                boolean[] decreased = new boolean[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    Long quantity = batch.get(i).quantity;
+                    if (stock.getQuantity() >= quantity) {
+                        stock.decrease(quantity);
+                        decreased[i] = true;
+                    }
+                }
+                return decreased;
+            });
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        } finally {
+            // batch 하나 당 트랜잭션 하나
+            stockMetrics.recordTransaction(STRATEGY, id, transactionStart);
+        }
+
+        boolean decreased = false;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results[i]) {
+                decreased = true;
+                batch.get(i).future.complete(null);
+            } else {
+                stockMetrics.incrementInsufficient(STRATEGY, id);
+                batch.get(i).future.completeExceptionally(new IllegalArgumentException("재고가 부족합니다."));
+            }
+        }
+
+        // commit 이후이므로 바로 처리된다.
+        if (decreased) {
+            eventPublisher.publishEvent(new StockDecreasedEvent(id));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 이미 예약된 flush 는 shutdown 이후에도 실행된다.
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static final class Lane {
+
+        private final Long id;
+        private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Lane(Long id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Pending {
+
+        private final Long quantity;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(Long quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockBatchRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockCounterTable;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StockServiceWithInMemoryCounter {
+
+    /**
+     * 재고 수량을 JVM 메모리(StockCounterTable)에 두고 락 없이 CAS 로 감소한다.
+     *
+     * - StockServiceWithSynchronized 와 같이 단일 JVM 에서만 정합성이 보장된다. (재고 전체를 한 노드가 가지는 경우)
+     * - synchronized 는 모든 요청이 모니터 하나를 기다리지만, 이 방식은 재고 id 별 CAS 이므로 코어 수 만큼 동시에 감소한다.
+     * - 요청 처리 중에는 DB 에 접근하지 않는다. (처음 사용하는 재고만 DB 에서 한번 적재한다.)
+     *
+     * checkpoint
+     * - 주기적으로 dirty 인 재고의 현재 수량을 JDBC batch update(StockBatchRepository) 로 DB 에 반영한다.
+     * - 감소량이 아니라 현재 수량을 quantity > ? 조건으로 반영하므로 여러번 반영해도 결과가 같다. (updateQuantityIfLower 와 같다.)
+     * - 반영에 실패한 재고는 다시 dirty 로 표시해서 다음 주기에 반영한다.
+     *
+     * 참고
+     * - 마지막 checkpoint 이후의 감소는 종료(장애) 시 사라진다. 재시작하면 DB 수량부터 다시 시작하므로 그만큼 더 팔 수 있다.
+     * - 종료 시(@PreDestroy) 마지막으로 한번 더 반영한다.
+     */
+
+    private static final String STRATEGY = "in_memory";
+
+    private final StockRepository stockRepository;
+    private final StockBatchRepository stockBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockMetrics stockMetrics;
+    private final StockCounterTable counters;
+    private final int batchSize;
+    private final long checkpointIntervalMillis;
+
+    private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor();
+
+    public StockServiceWithInMemoryCounter(StockRepository stockRepository,
+                                           StockBatchRepository stockBatchRepository,
+                                           TransactionTemplate transactionTemplate,
+                                           ApplicationEventPublisher eventPublisher,
+                                           StockMetrics stockMetrics,
+                                           @Value("${stock.in-memory.capacity:65536}") int capacity,
+                                           @Value("${stock.in-memory.batch-size:500}") int batchSize,
+                                           @Value("${stock.in-memory.checkpoint-interval-millis:100}") long checkpointIntervalMillis) {
+        this.stockRepository = stockRepository;
+        this.stockBatchRepository = stockBatchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.stockMetrics = stockMetrics;
+        this.counters = new StockCounterTable(capacity);
+        this.batchSize = batchSize;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void decreaseStock(Long id, Long quantity) {
+
+        long remain = counters.tryDecrement(id, quantity);
+
+        if (remain == StockCounterTable.NOT_LOADED) {
+            load(id);
+            remain = counters.tryDecrement(id, quantity);
+        }
+
+        if (remain == StockCounterTable.NOT_ENOUGH) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+    }
+
+    public Long getQuantity(Long id) {
+        long quantity = counters.get(id);
+        return quantity != StockCounterTable.NOT_LOADED
+                ? quantity
+                : stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+    }
+
+    /**
+     * dirty 인 재고를 batch size 씩 하나의 트랜잭션으로 반영한다.
+     *
+     * @return DB 에 반영한 재고 수
+     */
+    public synchronized int checkpoint() {
+
+        long[] ids = new long[batchSize];
+        long[] quantities = new long[batchSize];
+        int[] size = {0};
+        int[] checkpointed = {0};
+
+        counters.drainDirty((id, quantity) -> {
+            ids[size[0]] = id;
+            quantities[size[0]] = quantity;
+            if (++size[0] == batchSize) {
+                checkpointed[0] += flush(ids, quantities, size[0]);
+                size[0] = 0;
+            }
+        });
+
+        if (size[0] > 0) {
+            checkpointed[0] += flush(ids, quantities, size[0]);
+        }
+        return checkpointed[0];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpointer.shutdown();
+        checkpointQuietly();
+    }
+
+    private void load(Long id) {
+        Stock stock = stockRepository.findById(id).orElseThrow();
+        // 여러 스레드가 동시에 적재해도 먼저 등록한 값만 남는다.
+        counters.putIfAbsent(id, stock.getQuantity());
+    }
+
+    private int flush(long[] ids, long[] quantities, int size) {
+
+        long transactionStart = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] updated = stockBatchRepository.updateQuantitiesIfLower(ids, quantities, size);
+
+                for (int i = 0; i < size; i++) {
+                    // 이미 같은 수량으로 반영된 재고는 0 이다. (rewriteBatchedStatements 면 알 수 없음, -2)
+                    if (StockBatchRepository.isUpdated(updated[i])) {
+                        eventPublisher.publishEvent(new StockDecreasedEvent(ids[i]));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            for (int i = 0; i < size; i++) {
+                counters.markDirty(ids[i]);
+            }
+            throw e;
+        } finally {
+            stockMetrics.recordTransaction(STRATEGY, null, transactionStart);
+        }
+        return size;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("in-memory counter checkpoint 실패", e);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.domain.StockCheckpoint;
+import dev.practice.stock.repository.StockBatchRepository;
+import dev.practice.stock.repository.StockCheckpointRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockCommandRingBuffer;
+import dev.practice.stock.support.StockCounterTable;
+import dev.practice.stock.support.StockJournal;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+@Lazy
+@Service
+public class StockServiceWithJournal {
+
+    /**
+     * 재고를 메모리(StockCounterTable)에서 감소시키고, 감소 기록을 mmap journal 에 남긴 뒤 응답한다.
+     *
+     * - StockServiceWithInMemoryCounter 는 checkpoint 이전의 감소를 장애 시 잃어버린다.
+     * - StockService 는 요청마다 트랜잭션을 commit 한다. (요청 수 만큼 DB fsync)
+     * - 이 방식은 요청을 ring buffer 에 넣고, journal 스레드 하나가 batch 로 꺼내서 메모리 감소 -> journal 기록 -> force 한번 -> 응답 순서로 처리한다.
+     * - 응답한 감소는 journal 에 fsync 되어 있으므로 장애가 나도 사라지지 않는다. (group fsync)
+     *
+     * checkpoint
+     * - journal 스레드가 주기적으로 dirty 재고의 (수량, 마지막 sequence) 를 떠서 checkpoint 스레드에 넘긴다.
+     * - - journal 스레드만 재고를 바꾸므로 그 시점의 수량과 sequence 가 정확히 맞는다.
+     * - checkpoint 스레드가 DB 에 batch update 로 반영하고, 같은 트랜잭션에서 StockCheckpoint row 에 sequence 를 기록한다.
+     * - - 수량과 sequence 가 같이 commit 되므로, 어느 시점에 죽어도 이미 반영된 감소를 다시 적용하지 않는다.
+     * - - journal header 에도 sequence 를 기록하지만 reset 판단용일 뿐이다. (commit 이후에 따로 기록하므로 늦을 수 있다.)
+     * - 재시작하면 DB 수량에서 시작해서 row 의 sequence 이후 레코드만 다시 적용한다. (replay)
+     * - row 가 없으면 DB 가 새로 만들어진 것이므로(ddl-auto: create 등) journal 에 남은 레코드는 버린다.
+     * - journal 이 가득 차면 journal 스레드가 직접 checkpoint 하고 처음부터 다시 쓴다.
+     *
+     * 참고
+     * - 단일 JVM 에서만 정합성이 보장된다. (journal 파일도 노드마다 하나)
+     * - 처음 사용하는 재고는 journal 스레드가 DB 에서 적재하므로 그 batch 는 느려진다.
+     * - 요청 처리 중에는 DB 에 접근하지 않으므로 처리량은 journal force 와 journal 스레드 하나의 속도로 정해진다.
+     * - 빈은 처음 사용할 때 만든다. (@Lazy) 만들 때 journal 을 열고 lock 을 잡은 뒤 replay 하므로, 이 전략을 쓰지 않는 context 는 파일을 건드리지 않는다.
+     */
+
+    private static final String STRATEGY = "journal";
+
+    private static final IllegalArgumentException NOT_ENOUGH = new IllegalArgumentException("재고가 부족합니다.");
+    private static final IllegalStateException NOT_PROCESSED = new IllegalStateException("처리되지 않은 요청입니다.");
+
+    private final StockRepository stockRepository;
+    private final StockBatchRepository stockBatchRepository;
+    private final StockCheckpointRepository stockCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockMetrics stockMetrics;
+    private final Path path;
+    // StockCheckpoint row 의 name
+    private final String checkpointName;
+    private final int sizeBytes;
+    private final int batchSize;
+    private final long checkpointIntervalNanos;
+
+    private final StockCounterTable counters;
+    private final StockCommandRingBuffer ringBuffer;
+    private final ExecutorService checkpointer = Executors.newSingleThreadExecutor();
+    private final Thread journalThread = new Thread(this::run, "stock-journal");
+
+    private StockJournal journal;
+    private volatile boolean running = true;
+
+    // journal 스레드에서만 사용한다.
+    private CompletableFuture<Boolean> checkpointing;
+    private long nextCheckpointNanos;
+
+    public StockServiceWithJournal(StockRepository stockRepository,
+                                   StockBatchRepository stockBatchRepository,
+                                   StockCheckpointRepository stockCheckpointRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   StockMetrics stockMetrics,
+                                   @Value("${stock.journal.path:data/stock.journal}") String path,
+                                   @Value("${stock.journal.size-bytes:67108864}") int sizeBytes,
+                                   @Value("${stock.journal.capacity:65536}") int capacity,
+                                   @Value("${stock.journal.ring-buffer-size:65536}") int ringBufferSize,
+                                   @Value("${stock.journal.batch-size:1024}") int batchSize,
+                                   @Value("${stock.journal.checkpoint-interval-millis:1000}") long checkpointIntervalMillis) {
+
+        // reset 직후에도 batch 하나를 다 기록할 수 없으면, 그 batch 는 영원히 실패한다.
+        if (StockJournal.recordCapacity(sizeBytes) < batchSize)
+            throw new IllegalArgumentException("journal 크기가 batch 하나를 담기에 작습니다. sizeBytes = "
+                    + sizeBytes + ", batchSize = " + batchSize);
+
+        this.stockRepository = stockRepository;
+        this.stockBatchRepository = stockBatchRepository;
+        this.stockCheckpointRepository = stockCheckpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.stockMetrics = stockMetrics;
+        this.path = Path.of(path);
+        this.checkpointName = "journal:" + this.path.toAbsolutePath().normalize();
+        this.sizeBytes = sizeBytes;
+        this.batchSize = batchSize;
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMillis);
+        this.counters = new StockCounterTable(capacity);
+        this.ringBuffer = new StockCommandRingBuffer(ringBufferSize);
+        this.journalThread.setDaemon(true);
+    }
+
+    /**
+     * journal 을 열고 checkpoint 이후 레코드를 다시 적용한 뒤 DB 에 반영한다. 그 다음에 요청을 받는다.
+     */
+    @PostConstruct
+    public void start() {
+
+        journal = new StockJournal(path, sizeBytes);
+
+        // DB 에 반영된 sequence 는 header 가 아니라 DB 의 row 를 기준으로 한다.
+        Long checkpoint = stockCheckpointRepository.findById(checkpointName)
+                .map(StockCheckpoint::getSequence)
+                .orElse(null);
+
+        int replayed = journal.replay(checkpoint != null ? checkpoint : 0L, (sequence, id, quantity) -> {
+            if (checkpoint == null)
+                return;
+            if (load(id)) {
+                counters.add(id, -quantity);
+            } else {
+                log.warn("journal replay, 존재하지 않는 재고, sequence = {}, id = {}", sequence, id);
+            }
+        });
+
+        if (checkpoint == null) {
+            log.warn("journal checkpoint row 가 없어서 남은 레코드를 버립니다. path = {}, discarded = {}", path, replayed);
+            stockCheckpointRepository.save(new StockCheckpoint(checkpointName, journal.lastSequence()));
+            replayed = 0;
+        }
+
+        if (!checkpointNow())
+            throw new IllegalStateException("journal replay 후 checkpoint 에 실패했습니다.");
+        journal.reset();
+        log.info("journal replay, path = {}, replayed = {}, checkpoint = {}", path, replayed, journal.checkpointSequence());
+
+        nextCheckpointNanos = System.nanoTime() + checkpointIntervalNanos;
+        journalThread.start();
+    }
+
+    public CompletableFuture<Void> decreaseStock(Long id, Long quantity) {
+
+        if (!running)
+            return CompletableFuture.failedFuture(new IllegalStateException("journal 이 종료되었습니다."));
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!ringBuffer.tryPublish(id, quantity, future))
+            return CompletableFuture.failedFuture(new IllegalStateException("재고 감소 대기열이 가득 찼습니다."));
+
+        return future;
+    }
+
+    public Long getQuantity(Long id) {
+        long quantity = counters.get(id);
+        return quantity != StockCounterTable.NOT_LOADED
+                ? quantity
+                : stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+    }
+
+    public int getQueueDepth() {
+        return ringBuffer.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        journalThread.join(TimeUnit.SECONDS.toMillis(5));
+        checkpointer.shutdown();
+        checkpointer.awaitTermination(5, TimeUnit.SECONDS);
+
+        // journal 스레드가 아직 돌고 있으면 snapshot, reset 을 같이 하면 안 된다. (journal 스레드에서만 호출하는 메서드)
+        // 마지막 checkpoint 이후 레코드는 journal 에 남아있으므로 재시작하면 replay 된다.
+        if (journalThread.isAlive()) {
+            log.error("journal 스레드가 종료되지 않아 checkpoint 없이 종료합니다. path = {}", path);
+            return;
+        }
+
+        if (checkpointNow()) {
+            journal.reset();
+        }
+        journal.close();
+    }
+
+    private void run() {
+
+        long[] ids = new long[batchSize];
+        long[] quantities = new long[batchSize];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[batchSize];
+        RuntimeException[] results = new RuntimeException[batchSize];
+        int idle = 0;
+
+        while (running) {
+            int count = ringBuffer.drainTo(ids, quantities, futures);
+
+            if (count == 0) {
+                checkpointIfDue();
+                // 잠깐 spin 하다가 요청이 없으면 park 한다.
+                if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(50_000L);
+                }
+                continue;
+            }
+            idle = 0;
+
+            try {
+                process(ids, quantities, futures, results, count);
+            } catch (RuntimeException e) {
+                // journal 스레드가 죽으면 이후 요청은 아무도 완료하지 않으므로, 이 batch 만 실패 처리하고 계속한다.
+                log.warn("journal batch 처리 실패", e);
+                fail(futures, count, e);
+            }
+            checkpointIfDue();
+        }
+
+        // 종료 시 남은 요청은 실패 처리한다.
+        int count;
+        while ((count = ringBuffer.drainTo(ids, quantities, futures)) > 0) {
+            for (int i = 0; i < count; i++) {
+                futures[i].completeExceptionally(new IllegalStateException("journal 이 종료되었습니다."));
+            }
+        }
+    }
+
+    private void process(long[] ids, long[] quantities, CompletableFuture<?>[] futures, RuntimeException[] results, int count) {
+
+        // batch 를 전부 기록할 공간이 없으면 먼저 DB 에 반영하고 처음부터 쓴다.
+        if (!journal.hasRemaining(count)) {
+            if (!checkpointNow()) {
+                fail(futures, count, new IllegalStateException("journal 이 가득 찼습니다."));
+                return;
+            }
+            journal.reset();
+        }
+
+        // 감소, 기록 도중에 실패해도 이번 batch 에서 감소한 것만 되돌리도록 먼저 채워둔다.
+        Arrays.fill(results, 0, count, NOT_PROCESSED);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                results[i] = decrease(ids[i], quantities[i]);
+                if (results[i] == null) {
+                    journal.append(ids[i], quantities[i]);
+                }
+            }
+            journal.force();
+        } catch (RuntimeException e) {
+            // 기록되지 않았으므로 journal 위치와 감소를 되돌린다. (다음 batch 가 이 레코드 뒤에 이어 쓰지 않도록)
+            journal.rollback();
+            for (int i = 0; i < count; i++) {
+                if (results[i] == null) {
+                    counters.add(ids[i], quantities[i]);
+                }
+            }
+            fail(futures, count, e);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (results[i] == null) {
+                futures[i].complete(null);
+            } else {
+                if (results[i] == NOT_ENOUGH) {
+                    stockMetrics.incrementInsufficient(STRATEGY, ids[i]);
+                }
+                futures[i].completeExceptionally(results[i] == NOT_ENOUGH
+                        ? new IllegalArgumentException("재고가 부족합니다.")
+                        : results[i]);
+            }
+            futures[i] = null;
+        }
+    }
+
+    /**
+     * @return 성공하면 null
+     */
+    private RuntimeException decrease(long id, long quantity) {
+
+        long remain = counters.tryDecrement(id, quantity);
+
+        if (remain == StockCounterTable.NOT_LOADED) {
+            try {
+                if (!load(id))
+                    return new NoSuchElementException("재고가 존재하지 않습니다.");
+            } catch (RuntimeException e) {
+                return e;
+            }
+            remain = counters.tryDecrement(id, quantity);
+        }
+
+        return remain == StockCounterTable.NOT_ENOUGH ? NOT_ENOUGH : null;
+    }
+
+    private boolean load(long id) {
+        Optional<Stock> stock = stockRepository.findById(id);
+        stock.ifPresent(value -> counters.putIfAbsent(id, value.getQuantity()));
+        return stock.isPresent();
+    }
+
+    private void checkpointIfDue() {
+
+        if (System.nanoTime() < nextCheckpointNanos)
+            return;
+        if (checkpointing != null && !checkpointing.isDone())
+            return;
+
+        nextCheckpointNanos = System.nanoTime() + checkpointIntervalNanos;
+        Snapshot snapshot = snapshot();
+        if (snapshot.size > 0) {
+            checkpointing = CompletableFuture.supplyAsync(() -> write(snapshot), checkpointer);
+        }
+    }
+
+    /**
+     * 진행 중인 checkpoint 를 기다린 뒤, 현재까지의 모든 감소를 DB 에 반영한다.
+     */
+    private boolean checkpointNow() {
+
+        if (checkpointing != null) {
+            checkpointing.join();
+            checkpointing = null;
+        }
+
+        return write(snapshot());
+    }
+
+    // journal 스레드(또는 journal 스레드가 멈춘 뒤)에서만 호출한다.
+    private Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(journal.lastSequence(), counters.capacity());
+        counters.drainDirty((id, quantity) -> {
+            snapshot.ids[snapshot.size] = id;
+            snapshot.quantities[snapshot.size] = quantity;
+            snapshot.size++;
+        });
+        return snapshot;
+    }
+
+    private boolean write(Snapshot snapshot) {
+
+        long transactionStart = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < snapshot.size; from += batchSize) {
+                    int size = Math.min(batchSize, snapshot.size - from);
+                    int[] updated = stockBatchRepository.updateQuantitiesIfLower(
+                            Arrays.copyOfRange(snapshot.ids, from, from + size),
+                            Arrays.copyOfRange(snapshot.quantities, from, from + size),
+                            size);
+
+                    for (int i = 0; i < size; i++) {
+                        if (StockBatchRepository.isUpdated(updated[i])) {
+                            eventPublisher.publishEvent(new StockDecreasedEvent(snapshot.ids[from + i]));
+                        }
+                    }
+                }
+                // 수량과 같은 트랜잭션에서 기록한다.
+                stockCheckpointRepository.advance(checkpointName, snapshot.sequence);
+            });
+        } catch (RuntimeException e) {
+            // 다음 checkpoint 에서 다시 반영한다. row 는 그대로이므로 재시작하면 replay 된다.
+            for (int i = 0; i < snapshot.size; i++) {
+                counters.markDirty(snapshot.ids[i]);
+            }
+            log.warn("journal checkpoint 실패, sequence = {}", snapshot.sequence, e);
+            return false;
+        } finally {
+            stockMetrics.recordTransaction(STRATEGY, null, transactionStart);
+        }
+
+        // DB 에는 이미 반영되었다. header 는 reset 판단에만 쓰므로 실패해도 정합성에는 문제가 없다.
+        try {
+            journal.markCheckpoint(snapshot.sequence);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("journal checkpoint 기록 실패, sequence = {}", snapshot.sequence, e);
+            return false;
+        }
+    }
+
+    // 이미 완료되어 비운 자리(null)는 건너뛴다.
+    private static void fail(CompletableFuture<?>[] futures, int count, Throwable cause) {
+        for (int i = 0; i < count; i++) {
+            if (futures[i] != null) {
+                futures[i].completeExceptionally(cause);
+                futures[i] = null;
+            }
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final long sequence;
+        private final long[] ids;
+        private final long[] quantities;
+        private int size;
+
+        private Snapshot(long sequence, int capacity) {
+            this.sequence = sequence;
+            this.ids = new long[capacity];
+            this.quantities = new long[capacity];
+        }
+    }
+}
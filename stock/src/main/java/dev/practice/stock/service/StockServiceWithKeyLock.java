@@ -0,0 +1,65 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.KeyLockTable;
+import dev.practice.stock.support.StockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class StockServiceWithKeyLock {
+
+    private static final String STRATEGY = "key_lock";
+
+    private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final KeyLockTable<Long> keyLockTable = new KeyLockTable<>();
+
+    /**
+     * StockServiceWithSynchronized 와 비교하여 달라진 점.
+     *
+     * - synchronized 메서드는 서비스 인스턴스(싱글톤) 하나를 락으로 사용하므로..
+     *  서로 다른 재고(상품 A, 상품 B)의 감소도 하나의 락 앞에서 줄을 서게 된다.
+     * - 재고 id 별로 락을 사용하여, 같은 재고끼리만 대기하고 서로 다른 재고는 병렬로 처리한다.
+     *
+     * - StockServiceWithSynchronized 와 같은 이유로 @Transactional 을 사용하지 않고,
+     *  락 범위 내에서 saveAndFlush 로 commit 까지 마친다.
+     *
+     * 참고
+     * - 여전히 단일 JVM 에서만 동작하므로 분산 환경에서는 동시성 문제가 발생한다.
+     */
+    public void decreaseStock(Long id, Long quantity) {
+
+        long waitStart = System.nanoTime();
+
+        keyLockTable.executeWithLock(id, () -> {
+            stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+            long holdStart = System.nanoTime();
+
+            try {
+                Stock stock = stockRepository.findById(id).orElseThrow();
+
+                stock.decrease(quantity);
+
+                stockRepository.saveAndFlush(stock);
+            } catch (IllegalArgumentException e) {
+                stockMetrics.incrementInsufficient(STRATEGY, id);
+                throw e;
+            } finally {
+                stockMetrics.recordTransaction(STRATEGY, id, holdStart);
+                stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+            }
+        });
+
+        eventPublisher.publishEvent(new StockDecreasedEvent(id));
+    }
+
+    public int lockTableSize() {
+        return keyLockTable.size();
+    }
+}
@@ -0,0 +1,221 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.StockLedgerEntry;
+import dev.practice.stock.domain.StockSnapshot;
+import dev.practice.stock.repository.StockLedgerEntryRepository;
+import dev.practice.stock.repository.StockSnapshotRepository;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class StockServiceWithLedger {
+
+    /**
+     * 재고 수량을 update 하지 않고, 변경 이력(ledger)을 insert 한다. (event sourcing)
+     *
+     * - 다른 전략들은 모두 Stock row 하나의 quantity 를 update 하므로, 결국 row 하나의 배타락을 두고 경쟁한다.
+     * - 감소, 입고를 StockLedgerEntry 로 insert 만 한다. insert 끼리는 같은 row 의 락을 기다리지 않는다.
+     * - 재고 수량 = 최근 snapshot + snapshot 이후 entry 들의 delta 합
+     * - compactor 가 주기적으로 snapshot 을 앞으로 옮겨서(rollForward) 더해야 하는 entry 수를 줄인다.
+     * - entry 는 지우지 않으므로 모든 변경 이력이 남는다.
+     *
+     * 재고 부족 확인
+     * - 매번 snapshot + entry 합을 조회하지 않고, 노드 메모리의 running balance(AtomicLong) 를 CAS 로 먼저 감소시킨다.
+     * - insert 가 실패하면 running balance 를 되돌린다.
+     * - running balance 는 재고 id 별로 처음 사용할 때 DB 에서 한번 계산한다.
+     *
+     * 참고
+     * - insert 트랜잭션은 snapshot row 를 공유 락(for share)으로 잡는다. insert 끼리는 기다리지 않고, compactor 의 배타 락과만 충돌한다.
+     * - compactor 는 배타 락을 잡은 뒤 마지막 entry id 를 읽으므로, 아직 commit 되지 않은 entry 를 건너뛰고 snapshot 을 옮기는 일이 없다. (IDENTITY id 는 commit 순서와 다를 수 있다.)
+     * - running balance 는 노드 로컬이다. 여러 노드가 같은 재고를 감소시키면 서로의 감소가 보이지 않으므로,
+     * - 재고 id 별로 한 노드가 처리하도록 라우팅하거나 StockServiceWithAllotment 처럼 노드 별로 수량을 나눠야 한다.
+     */
+
+    private static final String STRATEGY = "ledger";
+
+    private final StockLedgerEntryRepository stockLedgerEntryRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMetrics stockMetrics;
+    private final long compactionIntervalMillis;
+
+    private final ConcurrentHashMap<Long, AtomicLong> balances = new ConcurrentHashMap<>();
+
+    // 마지막 compaction 이후 entry 가 추가된 재고 id
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor();
+
+    public StockServiceWithLedger(StockLedgerEntryRepository stockLedgerEntryRepository,
+                                  StockSnapshotRepository stockSnapshotRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  StockMetrics stockMetrics,
+                                  @Value("${stock.ledger.compaction-interval-millis:1000}") long compactionIntervalMillis) {
+        this.stockLedgerEntryRepository = stockLedgerEntryRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMetrics = stockMetrics;
+        this.compactionIntervalMillis = compactionIntervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 재고 id 의 ledger 를 시작한다.
+    public void open(Long stockId, Long quantity) {
+        transactionTemplate.executeWithoutResult(status -> stockSnapshotRepository.save(StockSnapshot.builder()
+                .stockId(stockId)
+                .quantity(quantity)
+                .build()));
+    }
+
+    public void decreaseStock(Long stockId, Long quantity) {
+
+        AtomicLong balance = balance(stockId);
+
+        for (int retries = 0; ; retries++) {
+            long current = balance.get();
+
+            if (current < quantity) {
+                stockMetrics.incrementInsufficient(STRATEGY, stockId);
+                throw new IllegalArgumentException("재고가 부족합니다.");
+            }
+
+            if (balance.compareAndSet(current, current - quantity)) {
+                stockMetrics.recordRetries(STRATEGY, stockId, retries);
+                break;
+            }
+        }
+
+        try {
+            append(stockId, -quantity);
+        } catch (RuntimeException e) {
+            balance.addAndGet(quantity);
+            throw e;
+        }
+    }
+
+    // 입고
+    public void increaseStock(Long stockId, Long quantity) {
+        append(stockId, quantity);
+
+        AtomicLong balance = balances.get(stockId);
+        if (balance != null) {
+            balance.addAndGet(quantity);
+        }
+    }
+
+    // snapshot + 이후 entry 합 (DB 기준)
+    public Long getQuantity(Long stockId) {
+        return transactionTemplate.execute(status -> {
+            StockSnapshot snapshot = stockSnapshotRepository.findById(stockId)
+                    .orElseThrow(() -> new NoSuchElementException("재고가 존재하지 않습니다."));
+
+            return snapshot.getQuantity() + stockLedgerEntryRepository.sumDeltaAfter(stockId, snapshot.getLastEntryId());
+        });
+    }
+
+    /**
+     * snapshot 이후의 entry 들을 snapshot 에 더한다.
+     *
+     * @return 반영한 delta 합
+     */
+    public long compact(Long stockId) {
+        return transactionTemplate.execute(status -> {
+            StockSnapshot snapshot = stockSnapshotRepository.findByStockIdWithPessimisticLock(stockId).orElse(null);
+            if (snapshot == null)
+                return 0L;
+
+            // 배타 락을 잡았으므로 이 시점에 commit 되지 않은 entry 는 없다.
+            Long lastEntryId = stockLedgerEntryRepository.findLastIdByStockId(stockId);
+            if (lastEntryId <= snapshot.getLastEntryId())
+                return 0L;
+
+            Long delta = stockLedgerEntryRepository.sumDeltaBetween(stockId, snapshot.getLastEntryId(), lastEntryId);
+            snapshot.rollForward(delta, lastEntryId);
+            return delta;
+        });
+    }
+
+    public void compactAll() {
+        List<Long> stockIds = new ArrayList<>(dirty);
+        for (Long stockId : stockIds) {
+            dirty.remove(stockId);
+            try {
+                compact(stockId);
+            } catch (RuntimeException e) {
+                dirty.add(stockId);
+                throw e;
+            }
+        }
+    }
+
+    // 다른 노드에서 입고한 경우 등, 다음 감소 때 running balance 를 DB 에서 다시 계산한다.
+    public void evictBalance(Long stockId) {
+        balances.remove(stockId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        compactor.shutdown();
+        compactor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void append(Long stockId, Long delta) {
+
+        long transactionStart = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                stockSnapshotRepository.findByStockIdWithSharedLock(stockId)
+                        .orElseThrow(() -> new NoSuchElementException("재고가 존재하지 않습니다."));
+
+                stockLedgerEntryRepository.save(StockLedgerEntry.builder()
+                        .stockId(stockId)
+                        .delta(delta)
+                        .build());
+            });
+        } finally {
+            stockMetrics.recordTransaction(STRATEGY, stockId, transactionStart);
+        }
+
+        dirty.add(stockId);
+    }
+
+    // DB 조회를 computeIfAbsent 안에서 하지 않는다. 처음 등록되기 전에는 이 노드의 감소가 없으므로, 누가 등록해도 같은 값이다.
+    private AtomicLong balance(Long stockId) {
+        AtomicLong balance = balances.get(stockId);
+        if (balance != null)
+            return balance;
+
+        AtomicLong loaded = new AtomicLong(getQuantity(stockId));
+        balance = balances.putIfAbsent(stockId, loaded);
+        return balance != null ? balance : loaded;
+    }
+
+    private void compactQuietly() {
+        try {
+            compactAll();
+        } catch (RuntimeException e) {
+            log.warn("stock ledger compaction failed", e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.domain.StockCheckpoint;
+import dev.practice.stock.repository.StockBatchRepository;
+import dev.practice.stock.repository.StockCheckpointRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.OffHeapStockTable;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Lazy
+@Service
+public class StockServiceWithOffHeapTable {
+
+    /**
+     * 재고를 heap 밖의 memory-mapped 파일(OffHeapStockTable)에 두고 CAS 로 감소한다.
+     *
+     * - StockServiceWithInMemoryCounter 는 재고 수 만큼 heap 배열을 잡고, 재시작하면 DB 에서 다시 적재한다.
+     * - 이 방식은 재고 수가 수천만이어도 heap 사용량이 그대로이고, 재시작해도 파일에 남아있는 재고를 바로 사용한다.
+     * - 파일에 없는 재고만 처음 한번 DB 에서 적재한다.
+     *
+     * DB 반영 (write-behind)
+     * - 감소한 재고 id 를 dirty 로 표시하고, 주기적으로 StockBatchRepository 로 반영한다. (quantity > ? 조건, 멱등)
+     * - dirty 는 heap 에 있으므로 반영 주기 동안 바뀐 재고 수 만큼만 차지한다.
+     * - 반영한 version 을 테이블 레코드(flushed)에도 남긴다.
+     * - 재시작하면 heap 의 dirty 가 사라지므로, 시작할 때 테이블을 순차로 읽어서 flushed 와 version 이 다른 재고만 batch size 씩 반영한다. (reconcile)
+     *
+     * 파일과 DB 의 세대(epoch)
+     * - 파일의 epoch 를 DB 의 StockCheckpoint row 에도 기록해 두고, 열 때 비교한다.
+     * - 다르면(ex. ddl-auto: create 로 DB 를 새로 만들어서 row 가 없고 재고 id 가 다시 1 부터 시작) 파일을 비우고 DB 에서 다시 적재한다.
+     *
+     * 입고
+     * - DB 반영은 감소 전용(quantity > ? 조건)이므로 MySQL 에 직접 입고하면 테이블에 반영되지 않고, 다음 flush 에서 테이블의 수량으로 덮어써진다.
+     * - 입고는 restock 으로만 한다. DB 와 테이블에 같이 더한다.
+     *
+     * 참고
+     * - 단일 JVM 에서만 정합성이 보장된다. (파일은 노드마다 하나, lock 으로 한 프로세스만 연다.)
+     * - 파일이 원본이다. 마지막 force 이후의 변경은 OS 장애 시 사라질 수 있다. (프로세스 장애는 page cache 에 남는다.)
+     * - 빈은 처음 사용할 때 만든다. (@Lazy) 만들 때 파일을 열고 lock 을 잡으므로, 이 전략을 쓰지 않는 context 는 파일을 건드리지 않는다.
+     */
+
+    private static final String STRATEGY = "off_heap";
+
+    private final StockRepository stockRepository;
+    private final StockBatchRepository stockBatchRepository;
+    private final StockCheckpointRepository stockCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockMetrics stockMetrics;
+    private final Path path;
+    // StockCheckpoint row 의 name
+    private final String epochName;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long forceIntervalMillis;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private OffHeapStockTable table;
+
+    public StockServiceWithOffHeapTable(StockRepository stockRepository,
+                                        StockBatchRepository stockBatchRepository,
+                                        StockCheckpointRepository stockCheckpointRepository,
+                                        TransactionTemplate transactionTemplate,
+                                        ApplicationEventPublisher eventPublisher,
+                                        StockMetrics stockMetrics,
+                                        @Value("${stock.off-heap.path:data/stock.table}") String path,
+                                        @Value("${stock.off-heap.capacity:1048576}") int capacity,
+                                        @Value("${stock.off-heap.batch-size:500}") int batchSize,
+                                        @Value("${stock.off-heap.flush-interval-millis:100}") long flushIntervalMillis,
+                                        @Value("${stock.off-heap.force-interval-millis:1000}") long forceIntervalMillis) {
+        this.stockRepository = stockRepository;
+        this.stockBatchRepository = stockBatchRepository;
+        this.stockCheckpointRepository = stockCheckpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.stockMetrics = stockMetrics;
+        this.path = Path.of(path);
+        this.epochName = "off-heap:" + this.path.toAbsolutePath().normalize();
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.forceIntervalMillis = forceIntervalMillis;
+    }
+
+    /**
+     * 파일을 열고, 재시작 전에 반영하지 못한 감소를 따라잡은 뒤 주기적으로 DB 에 반영한다.
+     * - @EventListener(ApplicationReadyEvent) 를 쓰면 이벤트를 받기 위해 lazy 빈이 만들어지므로 생성 시점에 시작한다.
+     */
+    @PostConstruct
+    public void start() {
+        table = new OffHeapStockTable(path, capacity);
+        verifyEpoch();
+
+        executor.execute(this::reconcileQuietly);
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::forceQuietly, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void decreaseStock(Long id, Long quantity) {
+
+        long remain = table.tryDecrement(id, quantity);
+
+        if (remain == OffHeapStockTable.NOT_LOADED) {
+            load(id);
+            remain = table.tryDecrement(id, quantity);
+        }
+
+        if (remain == OffHeapStockTable.NOT_ENOUGH) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+
+        dirty.add(id);
+    }
+
+    /**
+     * 입고한다. DB 에 먼저 더하고 테이블에 더한다.
+     * - flush 와 같은 lock 을 잡으므로 그 사이에 flush 가 끼어들어 DB 를 입고 전 테이블 수량으로 덮어쓰지 않는다.
+     * - 테이블에 없는 재고는 먼저 적재한다. (DB 에 더한 뒤에 적재하면 입고 수량이 두번 더해진다.)
+     * - 그 사이의 감소는 테이블에만 반영되어 있으므로 dirty 로 표시해서 다음 flush 에서 DB 를 맞춘다.
+     */
+    public synchronized void restock(Long id, Long quantity) {
+
+        if (quantity <= 0)
+            throw new IllegalArgumentException("입고 수량은 양수여야 합니다. quantity = " + quantity);
+
+        if (table.get(id) == OffHeapStockTable.NOT_LOADED) {
+            load(id);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (stockRepository.increaseQuantity(id, quantity) == 0)
+                throw new NoSuchElementException("재고가 존재하지 않습니다.");
+        });
+
+        table.add(id, quantity);
+        dirty.add(id);
+    }
+
+    public Long getQuantity(Long id) {
+        long quantity = table.get(id);
+        return quantity != OffHeapStockTable.NOT_LOADED
+                ? quantity
+                : stockRepository.findById(id).map(Stock::getQuantity).orElseThrow();
+    }
+
+    /**
+     * @return DB 에 반영한 재고 id 수
+     */
+    public synchronized int flush() {
+
+        int flushed = 0;
+        List<Long> batch;
+
+        while (!(batch = drain()).isEmpty()) {
+
+            long[] ids = new long[batch.size()];
+            long[] quantities = new long[batch.size()];
+            long[] versions = new long[batch.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = batch.get(i);
+                // version 을 먼저 읽는다. (OffHeapStockTable.forEachDirty 참고)
+                versions[i] = table.getVersion(ids[i]);
+                quantities[i] = table.get(ids[i]);
+            }
+
+            try {
+                write(ids, quantities, ids.length);
+            } catch (RuntimeException e) {
+                dirty.addAll(batch);
+                throw e;
+            }
+            markFlushed(ids, versions, ids.length);
+            flushed += ids.length;
+        }
+
+        return flushed;
+    }
+
+    /**
+     * 테이블에서 DB 에 반영하지 않은 재고(flushed != version)만 반영한다. 재시작 전에 반영하지 못한 감소를 따라잡는다.
+     *
+     * @return 반영한 재고 수
+     */
+    public synchronized long reconcile() {
+
+        long[] ids = new long[batchSize];
+        long[] quantities = new long[batchSize];
+        long[] versions = new long[batchSize];
+        int[] size = {0};
+        long[] reconciled = {0L};
+
+        table.forEachDirty((id, productId, quantity, version) -> {
+            ids[size[0]] = id;
+            quantities[size[0]] = quantity;
+            versions[size[0]] = version;
+            reconciled[0]++;
+            if (++size[0] == batchSize) {
+                write(ids, quantities, size[0]);
+                markFlushed(ids, versions, size[0]);
+                size[0] = 0;
+            }
+        });
+
+        if (size[0] > 0) {
+            write(ids, quantities, size[0]);
+            markFlushed(ids, versions, size[0]);
+        }
+        return reconciled[0];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        flushQuietly();
+        table.close();
+    }
+
+    /**
+     * 파일을 지금 DB 에서 만들었는지 확인하고, 아니면 비운다. 요청을 받기 전에 한번만 호출한다.
+     */
+    private void verifyEpoch() {
+
+        Long epoch = stockCheckpointRepository.findById(epochName)
+                .map(StockCheckpoint::getSequence)
+                .orElse(null);
+
+        if (epoch != null && epoch == table.epoch())
+            return;
+
+        log.warn("stock table 의 epoch 가 DB 와 달라서 비웁니다. path = {}, file = {}, db = {}, size = {}",
+                path, table.epoch(), epoch, table.size());
+
+        // 파일을 먼저 비운다. row 를 기록하기 전에 죽어도 다음에 열 때 다시 비울 뿐이다.
+        long next = ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE);
+        table.clear(next);
+        stockCheckpointRepository.save(new StockCheckpoint(epochName, next));
+    }
+
+    private void load(Long id) {
+        Stock stock = stockRepository.findById(id).orElseThrow();
+        // 여러 스레드가 동시에 적재해도 먼저 등록한 값만 남는다.
+        table.putIfAbsent(id, stock.getProductId(), stock.getQuantity());
+    }
+
+    private void write(long[] ids, long[] quantities, int size) {
+
+        long transactionStart = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] updated = stockBatchRepository.updateQuantitiesIfLower(ids, quantities, size);
+
+                for (int i = 0; i < size; i++) {
+                    if (StockBatchRepository.isUpdated(updated[i])) {
+                        eventPublisher.publishEvent(new StockDecreasedEvent(ids[i]));
+                    }
+                }
+            });
+        } finally {
+            stockMetrics.recordTransaction(STRATEGY, null, transactionStart);
+        }
+    }
+
+    // commit 이후에 기록한다. 기록 전에 죽으면 다음 reconcile 에서 한번 더 반영할 뿐이다. (멱등)
+    private void markFlushed(long[] ids, long[] versions, int size) {
+        for (int i = 0; i < size; i++) {
+            table.markFlushed(ids[i], versions[i]);
+        }
+    }
+
+    private List<Long> drain() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        for (Long id : dirty) {
+            if (batch.size() >= batchSize)
+                break;
+            // 꺼낸 뒤에 다시 감소하면 다시 dirty 가 되어 다음 batch 에 포함된다.
+            if (dirty.remove(id)) {
+                batch.add(id);
+            }
+        }
+        return batch;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("off-heap table flush 실패", e);
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            table.force();
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("off-heap table force 실패", e);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            log.info("off-heap table reconcile, size = {}, reconciled = {}", table.size(), reconcile());
+        } catch (RuntimeException e) {
+            log.warn("off-heap table reconcile 실패", e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package dev.practice.stock.service;
 
 import dev.practice.stock.domain.StockWithVersion;
 import dev.practice.stock.repository.StockRepositoryWithOptimisticLock;
+import dev.practice.stock.support.StockMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -10,7 +11,10 @@ import org.springframework.transaction.annotation.Transactional;
 @RequiredArgsConstructor
 public class StockServiceWithOptimisticLock {
 
+    private static final String STRATEGY = "optimistic";
+
     private final StockRepositoryWithOptimisticLock stockRepositoryWithOptimisticLock;
+    private final StockMetrics stockMetrics;
 
     /**
      * 동시성 문제 해결을 위해 낙관적 락을 사용하였다.
@@ -33,8 +37,15 @@ public class StockServiceWithOptimisticLock {
          * 2. 재고 업데이트
          * 3. 재고 저장
          */
+        stockMetrics.timeTransaction(STRATEGY, id);
+
         StockWithVersion stockWithVersion = stockRepositoryWithOptimisticLock.findById(id).orElseThrow();
 
-        stockWithVersion.decrease(quantity);
+        try {
+            stockWithVersion.decrease(quantity);
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw e;
+        }
     }
 }
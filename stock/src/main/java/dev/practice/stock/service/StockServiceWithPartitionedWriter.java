@@ -0,0 +1,246 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StockServiceWithPartitionedWriter {
+
+    /**
+     * 재고 id 를 hash 해서 N 개의 partition 중 하나로 보내고, partition 마다 스레드 하나만 그 재고를 감소시킨다. (single writer)
+     *
+     * - StockServiceWithSynchronized, StockServiceWithPessimisticLock 은 요청 스레드들이 락 하나를 두고 경쟁한다.
+     * - 이 방식은 같은 재고의 요청이 항상 같은 스레드로 가므로, 락 없이 도착 순서대로 감소시킨다.
+     * - partition 스레드는 대기열에 쌓인 요청을 batch size 만큼 꺼내서 하나의 트랜잭션으로 처리한다.
+     * - 각 요청의 결과는 commit 이후에 CompletableFuture 로 전달한다.
+     * - 대기열은 partition 마다 크기가 고정되어 있고, 가득 차면 기다리지 않고 바로 실패한다. (backpressure)
+     *
+     * batch 처리
+     * - batch 의 재고들을 한번에 조회하고, 도착 순서대로 메모리에서 감소시켜 재고 id 별 감소량을 구한다.
+     * - 재고 id 별로 조건부 update(decreaseQuantity) 한번씩 반영한다. (재고가 부족한 요청만 실패, 부분 성공)
+     * - 조회에 락을 걸지 않지만, 반영은 조건부 update 이므로 다른 노드(전략)가 같은 재고를 감소시켜도 초과 감소되지 않는다.
+     * - - 그 사이에 재고가 줄어서 반영되지 않으면, 그 재고의 요청들을 재고 부족으로 실패 처리한다.
+     *
+     * 참고
+     * - StockServiceWithGroupCommit 은 재고 id 별 대기열 + 공유 스레드 풀이고, 이 방식은 partition 별 대기열 + 전용 스레드이다.
+     * - 대기열 길이는 stock.partition.queue.depth 지표로 노출한다. (늘어나면 partition 스레드가 DB 를 따라가지 못하는 것)
+     * - 한 partition 에 hot 재고가 몰리면 다른 partition 이 놀고 있어도 그 partition 의 처리량이 상한이다.
+     */
+
+    private static final String STRATEGY = "partitioned";
+
+    private final StockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatchSize;
+    private final Partition[] partitions;
+
+    private volatile boolean running = true;
+
+    public StockServiceWithPartitionedWriter(StockRepository stockRepository,
+                                             TransactionTemplate transactionTemplate,
+                                             StockMetrics stockMetrics,
+                                             ApplicationEventPublisher eventPublisher,
+                                             @Value("${stock.partitioned.partitions:8}") int partitionCount,
+                                             @Value("${stock.partitioned.queue-capacity:10000}") int queueCapacity,
+                                             @Value("${stock.partitioned.max-batch-size:100}") int maxBatchSize) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMetrics = stockMetrics;
+        this.eventPublisher = eventPublisher;
+        this.maxBatchSize = maxBatchSize;
+        this.partitions = new Partition[partitionCount];
+
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, queueCapacity);
+            stockMetrics.gaugeQueueDepth(STRATEGY, String.valueOf(i), partitions[i].queue);
+            partitions[i].thread.start();
+        }
+    }
+
+    public CompletableFuture<Void> decreaseStock(Long id, Long quantity) {
+
+        if (!running)
+            return CompletableFuture.failedFuture(new IllegalStateException("재고 감소 partition 이 종료되었습니다."));
+
+        Pending pending = new Pending(id, quantity);
+
+        BlockingQueue<Pending> queue = partitionOf(id).queue;
+        if (!queue.offer(pending))
+            return CompletableFuture.failedFuture(new IllegalStateException("재고 감소 대기열이 가득 찼습니다."));
+
+        // running 확인과 offer 사이에 종료되어 partition 스레드가 남은 요청을 이미 비웠다면, 이 요청은 아무도 꺼내지 않는다.
+        // 대기열에서 직접 꺼내는 데 성공하면 여기서 실패 처리하고, 실패하면 partition 스레드가 꺼내서 완료한다.
+        if (!running && queue.remove(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException("재고 감소 partition 이 종료되었습니다."));
+        }
+
+        return pending.future;
+    }
+
+    /**
+     * @return partition 별 대기 중인 요청 수
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            depths[i] = partitions[i].queue.size();
+        }
+        return depths;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Partition partition : partitions) {
+            partition.thread.interrupt();
+        }
+        for (Partition partition : partitions) {
+            partition.thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private Partition partitionOf(Long id) {
+        return partitions[Math.floorMod(Long.hashCode(id), partitions.length)];
+    }
+
+    private void apply(List<Pending> batch) {
+
+        // 재고 id 별 요청 (도착 순서 유지)
+        Map<Long, List<Pending>> byId = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byId.computeIfAbsent(pending.id, key -> new ArrayList<>()).add(pending);
+        }
+
+        Map<Long, List<Pending>> decreased;
+        long transactionStart = System.nanoTime();
+        try {
+            decreased = transactionTemplate.execute(status -> {
+                Map<Long, Long> quantities = new HashMap<>();
+                for (Stock stock : stockRepository.findAllById(byId.keySet())) {
+                    quantities.put(stock.getId(), stock.getQuantity());
+                }
+
+                Map<Long, List<Pending>> accepted = new HashMap<>();
+                byId.forEach((id, pendings) -> {
+                    Long quantity = quantities.get(id);
+                    if (quantity == null) {
+                        pendings.forEach(pending -> pending.result = new NoSuchElementException("재고가 존재하지 않습니다."));
+                        return;
+                    }
+
+                    long total = 0L;
+                    List<Pending> applied = new ArrayList<>();
+                    for (Pending pending : pendings) {
+                        if (quantity - total >= pending.quantity) {
+                            total += pending.quantity;
+                            applied.add(pending);
+                        } else {
+                            pending.result = new IllegalArgumentException("재고가 부족합니다.");
+                        }
+                    }
+
+                    if (total == 0L)
+                        return;
+
+                    // 조회 이후 다른 곳에서 재고를 줄였으면 반영되지 않는다.
+                    if (stockRepository.decreaseQuantity(id, total) == 0) {
+                        applied.forEach(pending -> pending.result = new IllegalArgumentException("재고가 부족합니다."));
+                        return;
+                    }
+                    accepted.put(id, applied);
+                });
+                return accepted;
+            });
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        } finally {
+            // batch 하나 당 트랜잭션 하나
+            stockMetrics.recordTransaction(STRATEGY, null, transactionStart);
+        }
+
+        for (Pending pending : batch) {
+            if (pending.result == null) {
+                pending.future.complete(null);
+            } else {
+                if (pending.result instanceof IllegalArgumentException) {
+                    stockMetrics.incrementInsufficient(STRATEGY, pending.id);
+                }
+                pending.future.completeExceptionally(pending.result);
+            }
+        }
+
+        // commit 이후이므로 바로 처리된다.
+        decreased.keySet().forEach(id -> eventPublisher.publishEvent(new StockDecreasedEvent(id)));
+    }
+
+    private final class Partition {
+
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+
+        private Partition(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this::run, "stock-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            List<Pending> batch = new ArrayList<>(maxBatchSize);
+            while (running) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                // 기다리지 않고 이미 쌓여있는 요청만 더 꺼낸다.
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                try {
+                    apply(batch);
+                } catch (RuntimeException e) {
+                    // partition 스레드가 죽으면 이 partition 의 재고는 처리되지 않으므로 삼킨다.
+                    log.warn("partition batch 처리 실패", e);
+                    batch.forEach(pending -> pending.future.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+
+            // 종료 시 남은 요청은 실패 처리한다.
+            queue.drainTo(batch);
+            batch.forEach(pending -> pending.future.completeExceptionally(
+                    new IllegalStateException("재고 감소 partition 이 종료되었습니다.")));
+        }
+    }
+
+    private static final class Pending {
+
+        private final Long id;
+        private final Long quantity;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        // partition 스레드에서만 읽고 쓴다. null 이면 성공
+        private RuntimeException result;
+
+        private Pending(Long id, Long quantity) {
+            this.id = id;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -2,15 +2,25 @@ package dev.practice.stock.service;
 
 import dev.practice.stock.domain.Stock;
 import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+
 @Service
 @RequiredArgsConstructor
 public class StockServiceWithPessimisticLock {
 
+    private static final String STRATEGY = "pessimistic";
+
     private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 동시성 문제 해결을 위해 비관적 락을 사용하였다.
@@ -36,8 +46,52 @@ public class StockServiceWithPessimisticLock {
          * 2. 재고 업데이트
          * 3. 재고 저장
          */
+        stockMetrics.timeTransaction(STRATEGY, id);
+
+        long waitStart = System.nanoTime();
         Stock stock = stockRepository.findByIdWithPessimisticLock(id).orElseThrow();
+        stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+        stockMetrics.timeLockHold(STRATEGY, id);
+
+        try {
+            stock.decrease(quantity);
+            eventPublisher.publishEvent(new StockDecreasedEvent(id));
+        } catch (IllegalArgumentException e) {
+            stockMetrics.incrementInsufficient(STRATEGY, id);
+            throw e;
+        }
+    }
+
+    /**
+     * 여러 재고를 하나의 트랜잭션에서 감소시킨다. (주문 한 건에 여러 상품)
+     *
+     * - 위 5번 처럼 재고를 하나씩 잠그면, 순서가 다른 두 주문이 서로의 락을 기다리는 데드락이 생길 수 있다.
+     * - select ... for update ... order by id 한번으로 모든 row 를 id 순서대로 잠근다. (DB 왕복 1번)
+     * - 하나라도 재고가 부족하거나 존재하지 않으면 예외가 발생하고 전체가 롤백된다. (all-or-nothing)
+     */
+    @Transactional
+    public void decreaseStocks(List<StockDecreaseCommand> commands) {
+
+        SortedMap<Long, Long> quantities = StockDecreaseCommand.sumById(commands);
+
+        stockMetrics.timeTransaction(STRATEGY, null);
+
+        long waitStart = System.nanoTime();
+        List<Stock> stocks = stockRepository.findAllByIdInWithPessimisticLock(quantities.keySet());
+        stockMetrics.recordLockWait(STRATEGY, null, waitStart);
+        stockMetrics.timeLockHold(STRATEGY, null);
+
+        if (stocks.size() != quantities.size())
+            throw new NoSuchElementException("재고가 존재하지 않습니다.");
 
-        stock.decrease(quantity);
+        for (Stock stock : stocks) {
+            try {
+                stock.decrease(quantities.get(stock.getId()));
+                eventPublisher.publishEvent(new StockDecreasedEvent(stock.getId()));
+            } catch (IllegalArgumentException e) {
+                stockMetrics.incrementInsufficient(STRATEGY, stock.getId());
+                throw e;
+            }
+        }
     }
 }
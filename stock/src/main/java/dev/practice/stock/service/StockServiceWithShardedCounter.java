@@ -0,0 +1,187 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.StockShard;
+import dev.practice.stock.repository.StockShardRepository;
+import dev.practice.stock.support.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class StockServiceWithShardedCounter {
+
+    private static final String STRATEGY = "sharded";
+
+    private final StockShardRepository stockShardRepository;
+    private final StockMetrics stockMetrics;
+    private final int shardCount;
+    private final int skipLockedRetries;
+    private final long skipLockedRetryDelayMillis;
+
+    public StockServiceWithShardedCounter(StockShardRepository stockShardRepository,
+                                          StockMetrics stockMetrics,
+                                          @Value("${stock.shard.count:8}") int shardCount,
+                                          @Value("${stock.shard.skip-locked-retries:3}") int skipLockedRetries,
+                                          @Value("${stock.shard.skip-locked-retry-delay-millis:1}") long skipLockedRetryDelayMillis) {
+        this.stockShardRepository = stockShardRepository;
+        this.stockMetrics = stockMetrics;
+        this.shardCount = shardCount;
+        this.skipLockedRetries = skipLockedRetries;
+        this.skipLockedRetryDelayMillis = skipLockedRetryDelayMillis;
+    }
+
+    // stock.shard.count 개의 shard 로 수량을 균등하게 나눠 생성한다.
+    @Transactional
+    public void createShards(Long stockId, Long quantity) {
+
+        List<StockShard> shards = new ArrayList<>();
+        for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+            shards.add(StockShard.builder()
+                    .stockId(stockId)
+                    .shardNo(shardNo)
+                    .quantity(share(quantity, shardNo))
+                    .build());
+        }
+
+        stockShardRepository.saveAll(shards);
+    }
+
+    /**
+     * 인기 상품의 재고를 여러 row(shard) 로 나눠서 처리한다.
+     *
+     * - 재고 하나가 row 하나면, 어떤 락 방식을 써도 처리량은 row 하나의 락 처리량을 넘지 못한다.
+     * - 재고를 N 개의 shard row 로 나누고, 감소할 때는 잠기지 않은 shard 하나만 잠근다. (for update skip locked)
+     * - 처리량은 shard 수에 비례해서 늘어난다.
+     *
+     * 감소 순서
+     * 1. 잠그지 않고 가장 큰 shard 수량을 읽어서, 하나의 shard 로 감소할 수 있는지 확인
+     * 2. 임의의 shard 번호부터 잠기지 않았고 수량이 충분한 shard 하나를 찾아 감소
+     * - 없다면 다른 트랜잭션이 사용중인 것이므로, 잠깐 기다렸다가 다시 찾는다. (skipLockedRetries 번)
+     * 3. 하나의 shard 로는 수량이 부족하거나, 재시도해도 찾지 못하면 모든 shard 를 순서대로 잠그고
+     * - 수량이 충분한 shard 가 있으면 그 shard 에서, 없으면 여러 shard 에 나눠서 감소
+     * - 합계도 부족하면 재고 부족
+     *
+     * 참고
+     * - 모든 shard 를 잠그면 그동안 다른 감소 요청이 모두 기다리므로, 하나의 shard 로 감소할 수 없을 때만 잠근다.
+     */
+    @Transactional
+    public void decreaseStock(Long stockId, Long quantity) {
+
+        stockMetrics.timeTransaction(STRATEGY, stockId);
+
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+
+        // 하나의 shard 로 감소할 수 없으면 skip locked 로 shard 를 잠그지 않고 바로 모든 shard 를 잠근다.
+        // (skip locked 가 훑으면서 잠근 row 를 가진 채 모든 shard 를 잠그면, 다른 트랜잭션과 데드락이 생길 수 있다.)
+        if (stockShardRepository.maxQuantityByStockId(stockId) < quantity) {
+            stockMetrics.recordRetries(STRATEGY, stockId, 1);
+            decreaseAcrossShards(stockId, quantity);
+            return;
+        }
+
+        // skip locked 는 대기하지 않으므로, 대기 시간은 shard 를 고르고 재시도하며 기다린 시간이다.
+        long waitStart = System.nanoTime();
+
+        for (int retries = 0; ; retries++) {
+            Optional<StockShard> shard = findAvailableSkipLocked(stockId, start, quantity);
+
+            if (shard.isPresent()) {
+                stockMetrics.recordLockWait(STRATEGY, stockId, waitStart);
+                stockMetrics.timeLockHold(STRATEGY, stockId);
+                stockMetrics.recordRetries(STRATEGY, stockId, retries);
+                shard.get().decrease(quantity);
+                return;
+            }
+
+            // 수량이 충분한 shard 가 모두 사용중이면 잠깐 기다렸다가 다시 고른다.
+            if (retries >= skipLockedRetries || !sleepQuietly(skipLockedRetryDelayMillis)) {
+                // 모든 shard 를 잠그는 경로는 재시도 한번을 더해서 기록한다.
+                stockMetrics.recordRetries(STRATEGY, stockId, retries + 1);
+                decreaseAcrossShards(stockId, quantity);
+                return;
+            }
+        }
+    }
+
+    private Optional<StockShard> findAvailableSkipLocked(Long stockId, int start, Long quantity) {
+        return stockShardRepository.findAvailableFromSkipLocked(stockId, start, quantity)
+                .or(() -> stockShardRepository.findAvailableBeforeSkipLocked(stockId, start, quantity));
+    }
+
+    // @return 인터럽트 없이 기다렸으면 true
+    private boolean sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void decreaseAcrossShards(Long stockId, Long quantity) {
+
+        long waitStart = System.nanoTime();
+        List<StockShard> shards = stockShardRepository.findAllByStockIdWithPessimisticLock(stockId);
+        stockMetrics.recordLockWait(STRATEGY, stockId, waitStart);
+        stockMetrics.timeLockHold(STRATEGY, stockId);
+
+        if (shards.isEmpty())
+            throw new NoSuchElementException("재고가 존재하지 않습니다.");
+
+        Optional<StockShard> enough = shards.stream()
+                .filter(shard -> shard.getQuantity() >= quantity)
+                .findFirst();
+
+        if (enough.isPresent()) {
+            enough.get().decrease(quantity);
+            return;
+        }
+
+        long total = shards.stream().mapToLong(StockShard::getQuantity).sum();
+        if (total < quantity) {
+            stockMetrics.incrementInsufficient(STRATEGY, stockId);
+            throw new IllegalArgumentException("재고가 부족합니다.");
+        }
+
+        long remain = quantity;
+        for (StockShard shard : shards) {
+            long taken = Math.min(shard.getQuantity(), remain);
+            shard.decrease(taken);
+            remain -= taken;
+
+            if (remain == 0)
+                break;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Long getQuantity(Long stockId) {
+        return stockShardRepository.sumQuantityByStockId(stockId);
+    }
+
+    /**
+     * shard 간 수량을 균등하게 다시 나눈다.
+     * - 특정 shard 만 먼저 바닥나면 skip locked 로 고를 수 있는 shard 가 줄어들어 경합이 다시 늘어난다.
+     */
+    @Transactional
+    public void rebalance(Long stockId) {
+
+        List<StockShard> shards = stockShardRepository.findAllByStockIdWithPessimisticLock(stockId);
+        long total = shards.stream().mapToLong(StockShard::getQuantity).sum();
+
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).changeQuantity(total / shards.size() + (i < total % shards.size() ? 1 : 0));
+        }
+    }
+
+    private Long share(Long quantity, int shardNo) {
+        return quantity / shardCount + (shardNo < quantity % shardCount ? 1 : 0);
+    }
+}
@@ -2,14 +2,20 @@ package dev.practice.stock.service;
 
 import dev.practice.stock.domain.Stock;
 import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
 public class StockServiceWithSynchronized {
 
+    private static final String STRATEGY = "synchronized";
+
     private final StockRepository stockRepository;
+    private final StockMetrics stockMetrics;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 동시성 문제 해결하기 위해 StockService 와 비교하여 달라진 점.
@@ -26,18 +32,38 @@ public class StockServiceWithSynchronized {
      * 
      * 참고
      * - synchronized 키워드는 단일 JVM 에서만 동작하므로 분산 환경에서는 여전히 동시성 문제가 발생한다.
+     * - 락 대기 시간을 재기 위해 메서드 대신 synchronized(this) 블럭을 사용한다. (아래 2번, 같은 락이다.)
      */
-    public synchronized void decreaseStock(Long id, Long quantity) {
-        /**
-         * 1. 재고 조회
-         * 2. 재고 업데이트
-         * 3. 재고 저장
-         */
-        Stock stock = stockRepository.findById(id).orElseThrow();
+    public void decreaseStock(Long id, Long quantity) {
+
+        long waitStart = System.nanoTime();
+
+        synchronized (this) {
+            stockMetrics.recordLockWait(STRATEGY, id, waitStart);
+            long holdStart = System.nanoTime();
+
+            try {
+                /**
+                 * 1. 재고 조회
+                 * 2. 재고 업데이트
+                 * 3. 재고 저장
+                 */
+                Stock stock = stockRepository.findById(id).orElseThrow();
+
+                stock.decrease(quantity);
 
-        stock.decrease(quantity);
+                stockRepository.saveAndFlush(stock);
+            } catch (IllegalArgumentException e) {
+                stockMetrics.incrementInsufficient(STRATEGY, id);
+                throw e;
+            } finally {
+                stockMetrics.recordTransaction(STRATEGY, id, holdStart);
+                stockMetrics.recordLockHold(STRATEGY, id, holdStart);
+            }
+        }
 
-        stockRepository.saveAndFlush(stock);
+        // saveAndFlush 에서 이미 commit 되었다.
+        eventPublisher.publishEvent(new StockDecreasedEvent(id));
     }
     /**
      * synchronized 사용 2 가지
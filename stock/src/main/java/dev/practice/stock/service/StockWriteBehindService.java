@@ -0,0 +1,116 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.repository.RedisStockRepository;
+import dev.practice.stock.repository.StockRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StockWriteBehindService {
+
+    /**
+     * redis 에서 감소된 재고를 비동기로 모아서 DB 에 반영한다. (write-behind)
+     *
+     * - 주기적으로 stock:dirty 에서 batch size 만큼 id 를 꺼내, redis 의 현재 수량을 하나의 트랜잭션으로 반영한다.
+     * - 감소량(delta)이 아니라 현재 수량을 반영하므로 같은 id 를 여러번 반영해도 결과가 같다.
+     * - 반영에 실패한 id 는 stock:dirty 로 되돌려 다음 주기에 다시 반영한다.
+     *
+     * 재시작 후 정합성 맞추기 (reconcile)
+     * - 애플리케이션 시작 시 stock:processing 에 남아있는 id (반영 도중 종료된 id) 를 stock:dirty 로 돌려놓고 모두 반영한다.
+     */
+
+    private final RedisStockRepository redisStockRepository;
+    private final StockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long intervalMillis;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    public StockWriteBehindService(RedisStockRepository redisStockRepository,
+                                   StockRepository stockRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${stock.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${stock.write-behind.interval-millis:100}") long intervalMillis) {
+        this.redisStockRepository = redisStockRepository;
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+        executor.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void reconcile() {
+        Long requeued = redisStockRepository.requeueProcessing();
+        log.info("write-behind reconcile, requeued = {}, flushed = {}", requeued, flush());
+    }
+
+    /**
+     * @return DB 에 반영한 재고 id 수
+     */
+    public synchronized int flush() {
+
+        int flushed = 0;
+        List<Long> ids;
+
+        while (!(ids = redisStockRepository.drainDirty(batchSize)).isEmpty()) {
+
+            List<Long> batch = ids;
+            List<String> quantities = redisStockRepository.getQuantities(batch);
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (quantities.get(i) != null
+                                && stockRepository.updateQuantityIfLower(batch.get(i), Long.valueOf(quantities.get(i))) == 1) {
+                            eventPublisher.publishEvent(new StockDecreasedEvent(batch.get(i)));
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                redisStockRepository.requeue(batch);
+                throw e;
+            }
+
+            redisStockRepository.completeFlush(batch);
+            flushed += batch.size();
+        }
+
+        return flushed;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 스케줄이 중단되지 않도록 예외를 삼키고 다음 주기에 재시도한다.
+            log.warn("write-behind flush 실패", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,176 @@
+package dev.practice.stock.support;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConflictRateTracker<K> {
+
+    /**
+     * 키 별 충돌률을 sliding window 로 추적하고, 낙관적/비관적 모드를 정한다.
+     *
+     * - window 를 bucket 여러개로 나누고, 시간이 지난 bucket 은 다시 사용한다. (키 당 고정 크기 배열)
+     * - 충돌률이 enterThreshold 이상이면 비관적 모드로, exitThreshold 이하로 내려오면 낙관적 모드로 바꾼다.
+     * - 두 기준값을 다르게 두어(hysteresis) 기준값 근처에서 모드가 계속 바뀌지 않도록 한다.
+     * - 표본이 minSamples 보다 적으면 모드를 바꾸지 않는다.
+     *
+     * 참고
+     * - 비관적 모드에서는 버전 충돌이 일어나지 않으므로, 요청 시작 시점에 같은 키의 다른 요청이 진행 중이었는지를 충돌로 기록한다.
+     * - (낙관적 모드였다면 충돌했을 요청이다.) 진행 중인 요청 수는 enter/exit 로 센다.
+     * - 키 별 상태는 요청이 들어온 키 마다 생성된다. 키 수에 제한이 없으므로, window 마다 한번씩 한동안 쓰이지 않은 키의 상태를 지운다.
+     * - window 안에 기록이 없고 진행 중인 요청도 없는 키가 대상이다. (다시 요청이 오면 낙관적 모드부터 시작한다.)
+     */
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int minSamples;
+    private final double enterThreshold;
+    private final double exitThreshold;
+
+    private final ConcurrentHashMap<K, KeyState> states = new ConcurrentHashMap<>();
+    private final AtomicLong lastEvictEpoch = new AtomicLong();
+
+    public ConflictRateTracker(long windowMillis, int bucketCount, int minSamples,
+                               double enterThreshold, double exitThreshold) {
+
+        if (exitThreshold > enterThreshold)
+            throw new IllegalArgumentException("exitThreshold 는 enterThreshold 보다 클 수 없습니다.");
+
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1L, windowMillis / bucketCount);
+        this.minSamples = minSamples;
+        this.enterThreshold = enterThreshold;
+        this.exitThreshold = exitThreshold;
+    }
+
+    /**
+     * @return 같은 키의 다른 요청이 진행 중이면 true
+     */
+    public boolean enter(K key) {
+        // 상태를 지우는 것과 겹치지 않도록 compute 안에서 센다.
+        int[] inFlight = new int[1];
+        states.compute(key, (k, state) -> {
+            KeyState current = state != null ? state : new KeyState(bucketCount);
+            inFlight[0] = current.inFlight.incrementAndGet();
+            return current;
+        });
+        return inFlight[0] > 1;
+    }
+
+    public void exit(K key) {
+        states.computeIfPresent(key, (k, state) -> {
+            state.inFlight.decrementAndGet();
+            return state;
+        });
+    }
+
+    public boolean isPessimistic(K key) {
+        KeyState state = states.get(key);
+        return state != null && state.pessimistic;
+    }
+
+    public void record(K key, boolean conflicted) {
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        evictIdle(epoch);
+        KeyState state = state(key);
+
+        synchronized (state) {
+            int index = (int) (epoch % bucketCount);
+            if (state.epochs[index] != epoch) {
+                state.epochs[index] = epoch;
+                state.attempts[index] = 0;
+                state.conflicts[index] = 0;
+            }
+            state.attempts[index]++;
+            if (conflicted) {
+                state.conflicts[index]++;
+            }
+
+            long[] window = sum(state, epoch);
+
+            if (window[0] < minSamples)
+                return;
+
+            double rate = (double) window[1] / window[0];
+            if (!state.pessimistic && rate >= enterThreshold) {
+                state.pessimistic = true;
+            } else if (state.pessimistic && rate <= exitThreshold) {
+                state.pessimistic = false;
+            }
+        }
+    }
+
+    public double conflictRate(K key) {
+        KeyState state = states.get(key);
+        if (state == null)
+            return 0.0;
+
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        synchronized (state) {
+            long[] window = sum(state, epoch);
+            return window[0] == 0 ? 0.0 : (double) window[1] / window[0];
+        }
+    }
+
+    // window 안의 bucket 만 더한다. {시도 횟수, 충돌 횟수}
+    private long[] sum(KeyState state, long epoch) {
+        long attempts = 0;
+        long conflicts = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            if (epoch - state.epochs[i] < bucketCount) {
+                attempts += state.attempts[i];
+                conflicts += state.conflicts[i];
+            }
+        }
+        return new long[]{attempts, conflicts};
+    }
+
+    /**
+     * window 마다 한번, window 안에 기록이 없고 진행 중인 요청도 없는 키의 상태를 지운다.
+     * - 지우는 중에 같은 키로 기록하면 그 기록 하나는 버려질 수 있다. (enter/exit 는 compute 로 지우는 것과 겹치지 않는다.)
+     */
+    private void evictIdle(long epoch) {
+        long last = lastEvictEpoch.get();
+        if (epoch - last < bucketCount || !lastEvictEpoch.compareAndSet(last, epoch))
+            return;
+
+        for (K key : states.keySet()) {
+            states.computeIfPresent(key, (k, state) -> isIdle(state, epoch) ? null : state);
+        }
+    }
+
+    private boolean isIdle(KeyState state, long epoch) {
+        if (state.inFlight.get() != 0)
+            return false;
+
+        synchronized (state) {
+            return sum(state, epoch)[0] == 0;
+        }
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    private KeyState state(K key) {
+        KeyState state = states.get(key);
+        return state != null ? state : states.computeIfAbsent(key, k -> new KeyState(bucketCount));
+    }
+
+    private static final class KeyState {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final long[] epochs;
+        private final long[] attempts;
+        private final long[] conflicts;
+        private volatile boolean pessimistic;
+
+        private KeyState(int bucketCount) {
+            this.epochs = new long[bucketCount];
+            this.attempts = new long[bucketCount];
+            this.conflicts = new long[bucketCount];
+            Arrays.fill(epochs, -1L);
+        }
+    }
+}
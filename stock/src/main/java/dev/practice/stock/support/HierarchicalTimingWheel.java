@@ -0,0 +1,293 @@
+package dev.practice.stock.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+@Slf4j
+public class HierarchicalTimingWheel implements AutoCloseable {
+
+    /**
+     * 계층형 타이밍 휠 (Kafka 의 SystemTimer, TimingWheel 과 같은 구조)
+     *
+     * - 한 바퀴가 tickMillis * wheelSize 인 휠에 만료 시각 별 bucket(연결 리스트)을 둔다.
+     * - 한 바퀴를 넘는 작업은 tick 이 wheelSize 배 큰 상위 휠(overflow)에 넣고, 시간이 흐르면 하위 휠로 다시 내려온다.
+     * - 등록, 취소는 bucket 연결 리스트에 넣고 빼는 것이라 O(1) 이다. (작업 수가 많아도 PriorityQueue 처럼 log N 이 아니다.)
+     * - DelayQueue 에는 작업이 아니라 bucket 만 들어가므로, 큐 크기는 작업 수가 아니라 bucket 수 만큼이다.
+     * - 빈 시간에는 reaper 스레드가 다음 bucket 만료까지 잠들어 있다. (tick 마다 깨어나지 않는다.)
+     *
+     * 참고
+     * - 만료 시각은 tickMillis 단위로 내림되므로, 실행은 최대 tickMillis 만큼 늦을 수 있다.
+     * - 만료된 작업은 executor 에서 실행한다. (reaper 스레드를 막지 않도록)
+     */
+
+    private final Executor executor;
+    private final DelayQueue<Bucket> delayQueue = new DelayQueue<>();
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final Wheel wheel;
+    private final Thread reaper;
+
+    // 등록은 read lock, 시계를 옮기는 것은 write lock (등록끼리는 동시에 할 수 있다.)
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    public HierarchicalTimingWheel(String name, long tickMillis, int wheelSize, Executor executor) {
+        this.executor = executor;
+        this.wheel = new Wheel(tickMillis, wheelSize, now());
+        this.reaper = new Thread(this::reap, name);
+        this.reaper.setDaemon(true);
+        this.reaper.start();
+    }
+
+    public Timeout schedule(long delayMillis, Runnable action) {
+        Timeout timeout = new Timeout(now() + Math.max(0L, delayMillis), action);
+
+        lock.readLock().lock();
+        try {
+            addOrRun(timeout);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return timeout;
+    }
+
+    // 등록되어 있지만 아직 실행되지 않은 작업 수
+    public int size() {
+        return taskCount.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        reaper.interrupt();
+    }
+
+    private void addOrRun(Timeout timeout) {
+        if (!wheel.add(timeout) && !timeout.cancelled) {
+            // 이미 만료되었다.
+            executor.execute(timeout.action);
+        }
+    }
+
+    private void reap() {
+        while (running) {
+            try {
+                Bucket bucket = delayQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (bucket == null)
+                    continue;
+
+                lock.writeLock().lock();
+                try {
+                    while (bucket != null) {
+                        wheel.advanceClock(bucket.getExpiration());
+                        // 상위 휠의 작업은 하위 휠로 내려가고, 만료된 작업은 실행된다.
+                        bucket.flush(this::addOrRun);
+                        bucket = delayQueue.poll();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("timing wheel reaper failed", e);
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private final class Wheel {
+
+        private final long tickMillis;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket[] buckets;
+        private long currentTime;
+
+        private volatile Wheel overflow;
+
+        private Wheel(long tickMillis, int wheelSize, long startMillis) {
+            this.tickMillis = tickMillis;
+            this.wheelSize = wheelSize;
+            this.interval = tickMillis * wheelSize;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket();
+            }
+            this.currentTime = startMillis - (startMillis % tickMillis);
+        }
+
+        /**
+         * @return 이미 만료되었거나 취소되었으면 false
+         */
+        private boolean add(Timeout timeout) {
+            long expiration = timeout.expiration;
+
+            if (timeout.cancelled)
+                return false;
+
+            if (expiration < currentTime + tickMillis)
+                return false;
+
+            if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMillis;
+                Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(timeout);
+
+                // bucket 이 새로운 만료 시각으로 재사용될 때만 DelayQueue 에 넣는다.
+                if (bucket.setExpiration(virtualId * tickMillis)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            }
+
+            return overflow().add(timeout);
+        }
+
+        private Wheel overflow() {
+            if (overflow == null) {
+                synchronized (this) {
+                    if (overflow == null) {
+                        overflow = new Wheel(interval, wheelSize, currentTime);
+                    }
+                }
+            }
+            return overflow;
+        }
+
+        private void advanceClock(long timeMillis) {
+            if (timeMillis >= currentTime + tickMillis) {
+                currentTime = timeMillis - (timeMillis % tickMillis);
+
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private final class Bucket implements Delayed {
+
+        // 연결 리스트의 sentinel
+        private final Timeout root = new Timeout(-1L, null);
+        private final AtomicLong expiration = new AtomicLong(-1L);
+
+        private Bucket() {
+            root.next = root;
+            root.prev = root;
+        }
+
+        private boolean setExpiration(long expirationMillis) {
+            return expiration.getAndSet(expirationMillis) != expirationMillis;
+        }
+
+        private long getExpiration() {
+            return expiration.get();
+        }
+
+        private void add(Timeout timeout) {
+            boolean done = false;
+            while (!done) {
+                // 다른 bucket 에 들어있으면 먼저 뺀다.
+                timeout.remove();
+
+                synchronized (this) {
+                    synchronized (timeout) {
+                        if (timeout.bucket == null) {
+                            Timeout tail = root.prev;
+                            timeout.next = root;
+                            timeout.prev = tail;
+                            timeout.bucket = this;
+                            tail.next = timeout;
+                            root.prev = timeout;
+                            taskCount.incrementAndGet();
+                            done = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            synchronized (this) {
+                synchronized (timeout) {
+                    if (timeout.bucket == this) {
+                        timeout.next.prev = timeout.prev;
+                        timeout.prev.next = timeout.next;
+                        timeout.next = null;
+                        timeout.prev = null;
+                        timeout.bucket = null;
+                        taskCount.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        private synchronized void flush(Consumer<Timeout> consumer) {
+            Timeout head = root.next;
+            while (head != root) {
+                remove(head);
+                consumer.accept(head);
+                head = root.next;
+            }
+            expiration.set(-1L);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - now(), 0L), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((Bucket) other).getExpiration());
+        }
+    }
+
+    public final class Timeout {
+
+        private final long expiration;
+        private final Runnable action;
+
+        private volatile Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+        private volatile boolean cancelled;
+
+        private Timeout(long expiration, Runnable action) {
+            this.expiration = expiration;
+            this.action = action;
+        }
+
+        // bucket 에서 빼기만 하므로 O(1) 이다.
+        public void cancel() {
+            cancelled = true;
+            remove();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void remove() {
+            // flush 도중 다른 bucket 으로 옮겨질 수 있으므로, 빠질 때까지 반복한다.
+            Bucket current = bucket;
+            while (current != null) {
+                current.remove(this);
+                current = bucket;
+            }
+        }
+    }
+}
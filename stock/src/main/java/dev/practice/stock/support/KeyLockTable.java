@@ -0,0 +1,58 @@
+package dev.practice.stock.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class KeyLockTable<K> {
+
+    /**
+     * 키 별로 락을 제공하는 락 테이블
+     *
+     * - 락은 해당 키를 처음 사용할 때 생성한다. (lazy)
+     * - 락을 사용중인(획득 or 대기) 스레드 수를 세고, 0 이 되면 테이블에서 제거한다.
+     * - 따라서, 테이블 크기는 동시에 락을 사용중인 스레드 수를 넘지 않는다. (메모리 제한, idle 키 정리)
+     * - 생성/제거는 ConcurrentHashMap.compute 로 원자적으로 처리하므로, 같은 키에 두개의 락이 생기지 않는다.
+     *
+     * 참고
+     * - 고정 개수의 락 배열에 hash 로 나눠 담는 striped lock 도 있지만, 서로 다른 키가 같은 락을 공유하게 된다.
+     */
+
+    private final ConcurrentHashMap<K, Entry> locks = new ConcurrentHashMap<>();
+
+    public <T> T executeWithLock(K key, Supplier<T> action) {
+
+        Entry entry = locks.compute(key, (k, e) -> {
+            Entry target = (e == null) ? new Entry() : e;
+            target.users++;
+            return target;
+        });
+
+        entry.lock.lock();
+        try {
+            return action.get();
+        } finally {
+            entry.lock.unlock();
+            locks.computeIfPresent(key, (k, e) -> --e.users == 0 ? null : e);
+        }
+    }
+
+    public void executeWithLock(K key, Runnable action) {
+        executeWithLock(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public int size() {
+        return locks.size();
+    }
+
+    private static final class Entry {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // compute 내부에서만 읽고 쓴다.
+        private int users;
+    }
+}
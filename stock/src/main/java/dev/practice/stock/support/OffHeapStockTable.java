@@ -0,0 +1,392 @@
+package dev.practice.stock.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class OffHeapStockTable implements AutoCloseable {
+
+    /**
+     * 재고 레코드를 heap 밖(memory-mapped 파일)에 두는 고정 크기 테이블
+     *
+     * - 레코드는 40 byte 고정 (id, productId, quantity, version, flushed) 이고, 파일을 mmap 해서 그대로 읽고 쓴다.
+     * - 재고 수가 늘어도 heap 에는 MappedByteBuffer 객체 몇개만 있다. (Stock 엔티티, Long, Map.Entry 를 만들지 않는다. GC 대상이 아니다.)
+     * - id 로 찾는 index 는 따로 두지 않고 레코드 배열 자체를 open addressing (linear probing) 으로 쓴다.
+     * - 감소는 mapped 메모리에 VarHandle CAS 로 직접 한다. 성공하면 version 을 1 올린다.
+     * - 파일이므로 재시작해도 그대로 남는다. (DB 에서 다시 적재하지 않는다.)
+     *
+     * 파일 구조
+     * - header (64 byte) : magic, capacity, 등록된 재고 수, epoch
+     * - record (40 byte) x capacity
+     * - MappedByteBuffer 는 2GB 까지만 map 할 수 있으므로 레코드 영역을 chunk 단위로 나눠서 map 한다.
+     *
+     * 참고
+     * - 레코드를 등록할 때는 id 자리에 -id 를 CAS 로 먼저 써서 슬롯을 잡고, 나머지를 채운 뒤 id 를 쓴다.
+     * - - 그 사이에 죽어서 -id 로 남은 슬롯은 다시 열 때 TOMBSTONE 으로 바꾼다. (probing 은 계속 지나가고, 다시 쓰지 않는다.)
+     * - 프로세스가 죽어도 쓴 내용은 OS page cache 에 남는다. OS 장애까지 견디려면 주기적으로 force() 해야 한다.
+     * - 인접 레코드가 cache line 을 나눠 쓴다. 인접 슬롯의 hot 재고끼리는 false sharing 이 생길 수 있다. (fibonacci hash 로 흩어놓는다.)
+     * - version 은 quantity 와 원자적으로 같이 바뀌지 않는다. (변경 횟수 용도, quantity 를 바꾼 뒤에 올린다.)
+     * - flushed 는 외부(DB)에 마지막으로 반영한 version 이다. version 과 다르면 반영할 변경이 남아있다. (forEachDirty, markFlushed)
+     * - 재고 id 는 양수여야 한다. 파일은 lock 을 잡으므로 한 곳에서만 열 수 있다.
+     * - epoch 는 파일을 어느 DB 에서 만들었는지 구분하는 값이다. 사용하는 쪽에서 DB 에 같은 값을 두고 비교한다.
+     */
+
+    public static final long NOT_ENOUGH = -1L;
+    public static final long NOT_LOADED = -2L;
+
+    private static final long MAGIC = 0x53544F434B544232L; // "STOCKTB2" (레코드에 flushed 추가)
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int EPOCH_OFFSET = 24;
+
+    private static final int RECORD_SIZE = 40;
+    private static final int ID = 0;
+    private static final int PRODUCT_ID = 8;
+    private static final int QUANTITY = 16;
+    private static final int VERSION = 24;
+    private static final int FLUSHED = 32;
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    // chunk 하나 = 2^24 레코드 = 640MB
+    private static final int MAX_CHUNK_SHIFT = 24;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] chunks;
+    private final int capacity;
+    private final int mask;
+    private final int shift;
+    private final int chunkShift;
+    private final int chunkMask;
+
+    public OffHeapStockTable(Path path, int capacity) {
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity 는 2의 거듭제곱이어야 합니다. capacity = " + capacity);
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.chunkShift = Math.min(MAX_CHUNK_SHIFT, Integer.numberOfTrailingZeros(capacity));
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = new MappedByteBuffer[capacity >>> chunkShift];
+
+        long chunkBytes = (long) RECORD_SIZE << chunkShift;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = tryLock(channel, path);
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * chunkBytes, chunkBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("stock table 을 열 수 없습니다. path = " + path, e);
+        }
+
+        long magic = (long) LONGS.get(header, MAGIC_OFFSET);
+        if (magic == 0L) {
+            LONGS.set(header, CAPACITY_OFFSET, (long) capacity);
+            LONGS.set(header, SIZE_OFFSET, 0L);
+            LONGS.set(header, EPOCH_OFFSET, 0L);
+            LONGS.set(header, MAGIC_OFFSET, MAGIC);
+            header.force();
+        } else if (magic != MAGIC) {
+            throw new IllegalStateException("stock table 파일이 아닙니다. path = " + path);
+        } else if ((long) LONGS.get(header, CAPACITY_OFFSET) != capacity) {
+            throw new IllegalStateException("stock table 의 capacity 가 다릅니다. file = "
+                    + LONGS.get(header, CAPACITY_OFFSET) + ", capacity = " + capacity);
+        } else {
+            recoverClaims();
+        }
+    }
+
+    /**
+     * 재고를 등록한다. 이미 있으면 덮어쓰지 않는다.
+     *
+     * @return 등록했으면 true
+     */
+    public boolean putIfAbsent(long id, long productId, long quantity) {
+
+        if (id <= 0)
+            throw new IllegalArgumentException("재고 id 는 양수여야 합니다. id = " + id);
+
+        int slot = hash(id);
+        for (int probe = 0; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            long key = (long) LONGS.getAcquire(chunk, offset + ID);
+
+            if (key == EMPTY) {
+                long witness = (long) LONGS.compareAndExchange(chunk, offset + ID, EMPTY, -id);
+                if (witness == EMPTY) {
+                    LONGS.set(chunk, offset + PRODUCT_ID, productId);
+                    LONGS.set(chunk, offset + QUANTITY, quantity);
+                    LONGS.set(chunk, offset + VERSION, 0L);
+                    LONGS.set(chunk, offset + FLUSHED, 0L);
+                    LONGS.setRelease(chunk, offset + ID, id);
+                    LONGS.getAndAdd(header, SIZE_OFFSET, 1L);
+                    return true;
+                }
+                key = witness;
+            }
+
+            if (key == id || key == -id)
+                return false;
+        }
+
+        throw new IllegalStateException("stock table 이 가득 찼습니다. capacity = " + capacity);
+    }
+
+    /**
+     * @return 감소 후 남은 재고, 재고 부족 시 NOT_ENOUGH, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long tryDecrement(long id, long quantity) {
+
+        int slot = indexOf(id);
+        if (slot < 0)
+            return NOT_LOADED;
+
+        MappedByteBuffer chunk = chunkOf(slot);
+        int offset = offsetOf(slot);
+        long current = (long) LONGS.getVolatile(chunk, offset + QUANTITY);
+        while (true) {
+            if (current < quantity)
+                return NOT_ENOUGH;
+
+            long witness = (long) LONGS.compareAndExchange(chunk, offset + QUANTITY, current, current - quantity);
+            if (witness == current) {
+                LONGS.getAndAdd(chunk, offset + VERSION, 1L);
+                return current - quantity;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * 입고, 감소한 재고를 되돌릴 때 사용한다.
+     *
+     * @return 증가 후 재고, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long add(long id, long delta) {
+
+        int slot = indexOf(id);
+        if (slot < 0)
+            return NOT_LOADED;
+
+        MappedByteBuffer chunk = chunkOf(slot);
+        int offset = offsetOf(slot);
+        long updated = (long) LONGS.getAndAdd(chunk, offset + QUANTITY, delta) + delta;
+        LONGS.getAndAdd(chunk, offset + VERSION, 1L);
+        return updated;
+    }
+
+    /**
+     * @return 현재 재고, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long get(long id) {
+        int slot = indexOf(id);
+        return slot < 0 ? NOT_LOADED : (long) LONGS.getVolatile(chunkOf(slot), offsetOf(slot) + QUANTITY);
+    }
+
+    /**
+     * @return 상품 id, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long getProductId(long id) {
+        int slot = indexOf(id);
+        return slot < 0 ? NOT_LOADED : (long) LONGS.get(chunkOf(slot), offsetOf(slot) + PRODUCT_ID);
+    }
+
+    /**
+     * @return 변경 횟수, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long getVersion(long id) {
+        int slot = indexOf(id);
+        return slot < 0 ? NOT_LOADED : (long) LONGS.getVolatile(chunkOf(slot), offsetOf(slot) + VERSION);
+    }
+
+    /**
+     * 등록된 모든 재고를 슬롯 순서대로 넘긴다. (파일을 처음부터 끝까지 순차로 읽는다.)
+     */
+    public void forEach(RecordConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            long id = (long) LONGS.getAcquire(chunk, offset + ID);
+            if (id > 0) {
+                consumer.accept(id, (long) LONGS.get(chunk, offset + PRODUCT_ID),
+                        (long) LONGS.getVolatile(chunk, offset + QUANTITY),
+                        (long) LONGS.getVolatile(chunk, offset + VERSION));
+            }
+        }
+    }
+
+    /**
+     * 마지막 markFlushed 이후 바뀐 재고만 슬롯 순서대로 넘긴다. (version != flushed)
+     * - version 을 quantity 보다 먼저 읽는다. 넘긴 version 까지의 변경은 넘긴 quantity 에 모두 들어있다.
+     */
+    public void forEachDirty(RecordConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            long id = (long) LONGS.getAcquire(chunk, offset + ID);
+            if (id <= 0)
+                continue;
+
+            long version = (long) LONGS.getVolatile(chunk, offset + VERSION);
+            if (version != (long) LONGS.getAcquire(chunk, offset + FLUSHED)) {
+                consumer.accept(id, (long) LONGS.get(chunk, offset + PRODUCT_ID),
+                        (long) LONGS.getVolatile(chunk, offset + QUANTITY), version);
+            }
+        }
+    }
+
+    /**
+     * version 까지의 변경을 외부에 반영했다고 기록한다. 그 뒤의 변경은 version 이 올라가므로 다시 dirty 가 된다.
+     * - 반영하는 쪽 한 곳(한 스레드)에서만 호출한다.
+     */
+    public void markFlushed(long id, long version) {
+        int slot = indexOf(id);
+        if (slot >= 0) {
+            LONGS.setRelease(chunkOf(slot), offsetOf(slot) + FLUSHED, version);
+        }
+    }
+
+    public long size() {
+        return (long) LONGS.getVolatile(header, SIZE_OFFSET);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long epoch() {
+        return (long) LONGS.getVolatile(header, EPOCH_OFFSET);
+    }
+
+    /**
+     * 모든 레코드를 지우고 epoch 를 바꾼다. 다른 메서드와 동시에 호출하면 안된다. (열자마자 사용하기 전에 호출한다.)
+     */
+    public void clear(long epoch) {
+        for (int slot = 0; slot < capacity; slot++) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            LONGS.set(chunk, offset + ID, EMPTY);
+            LONGS.set(chunk, offset + PRODUCT_ID, 0L);
+            LONGS.set(chunk, offset + QUANTITY, 0L);
+            LONGS.set(chunk, offset + VERSION, 0L);
+            LONGS.set(chunk, offset + FLUSHED, 0L);
+        }
+        LONGS.set(header, SIZE_OFFSET, 0L);
+        LONGS.setVolatile(header, EPOCH_OFFSET, epoch);
+        force();
+    }
+
+    /**
+     * 바뀐 page 를 디스크에 반영한다.
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            force();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int indexOf(long id) {
+
+        int slot = hash(id);
+        for (int probe = 0; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            long key = (long) LONGS.getAcquire(chunk, offset + ID);
+
+            // 다른 스레드가 등록 중이면 끝날 때까지 기다린다.
+            while (key == -id) {
+                Thread.onSpinWait();
+                key = (long) LONGS.getAcquire(chunk, offset + ID);
+            }
+
+            if (key == id)
+                return slot;
+            if (key == EMPTY)
+                return -1;
+        }
+        return -1;
+    }
+
+    // 등록 도중 죽어서 -id 로 남은 슬롯을 정리한다. 다시 열 때 한번만 호출한다.
+    private void recoverClaims() {
+        for (int slot = 0; slot < capacity; slot++) {
+            MappedByteBuffer chunk = chunkOf(slot);
+            int offset = offsetOf(slot);
+            long id = (long) LONGS.get(chunk, offset + ID);
+            if (id < 0 && id != TOMBSTONE) {
+                LONGS.set(chunk, offset + ID, TOMBSTONE);
+            }
+        }
+    }
+
+    private MappedByteBuffer chunkOf(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    private int offsetOf(int slot) {
+        return (slot & chunkMask) * RECORD_SIZE;
+    }
+
+    // 연속된 id 가 연속된 슬롯에 몰리지 않도록 섞는다. (fibonacci hashing)
+    private int hash(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path path) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("다른 곳에서 사용 중인 stock table 입니다. path = " + path);
+        }
+        return lock;
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+
+        void accept(long id, long productId, long quantity, long version);
+    }
+}
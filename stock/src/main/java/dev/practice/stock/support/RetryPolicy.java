@@ -0,0 +1,53 @@
+package dev.practice.stock.support;
+
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+public class RetryPolicy {
+
+    /**
+     * 재시도 정책
+     *
+     * - maxAttempts : 최대 시도 횟수 (첫 시도 포함)
+     * - baseDelayMillis, maxDelayMillis : 대기 시간의 최소, 최대값
+     * - deadlineMillis : 첫 시도부터 포기할 때까지의 전체 시간
+     *
+     * decorrelated jitter
+     * - 다음 대기 시간 = min(max, random(base, 이전 대기 시간 * 3))
+     * - 고정 대기(ex. 50ms) 는 충돌한 스레드들이 동시에 깨어나 다시 충돌한다. (thundering herd)
+     * - 대기 시간을 지수적으로 늘리되 무작위로 흩어서, 재시도 시점이 겹치지 않게 한다.
+     */
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+
+        if (maxAttempts < 1 || baseDelayMillis < 1 || maxDelayMillis < baseDelayMillis || deadlineMillis < 1)
+            throw new IllegalArgumentException("잘못된 재시도 정책입니다.");
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.max(baseDelayMillis + 1, previousDelayMillis * 3);
+        return Math.min(maxDelayMillis, ThreadLocalRandom.current().nextLong(baseDelayMillis, upper));
+    }
+
+    /**
+     * attempt 번째 시도가 실패했을 때 delayMillis 만큼 기다린 뒤 다시 시도해도 되는지
+     * - 최대 시도 횟수에 도달했거나, 기다리고 나면 deadline 을 넘으면 포기한다.
+     */
+    public boolean canRetry(int attempt, long delayMillis, long deadlineNanos) {
+        return attempt < maxAttempts
+                && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) <= deadlineNanos;
+    }
+}
@@ -0,0 +1,45 @@
+package dev.practice.stock.support;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class RetryStatistics {
+
+    /**
+     * 재시도 통계
+     * - 여러 스레드가 동시에 기록하므로 경합이 적은 LongAdder 를 사용한다.
+     */
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder successAttempts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder failureAttempts = new LongAdder();
+
+    public void recordSuccess(int attempts) {
+        successes.increment();
+        successAttempts.add(attempts);
+    }
+
+    // 재시도 횟수나 deadline 을 넘어서 포기한 경우
+    public void recordFailure(int attempts) {
+        failures.increment();
+        failureAttempts.add(attempts);
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getAttempts() {
+        return successAttempts.sum() + failureAttempts.sum();
+    }
+
+    // 성공 1건 당 평균 시도 횟수, 1 에 가까울수록 충돌이 적다.
+    public double getAttemptsPerSuccess() {
+        long count = successes.sum();
+        return count == 0 ? 0.0 : (double) successAttempts.sum() / count;
+    }
+}
@@ -0,0 +1,110 @@
+package dev.practice.stock.support;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StockCommandRingBuffer {
+
+    /**
+     * 재고 감소 명령(id, quantity, future)을 담는 고정 크기 ring buffer (생산자 여럿, 소비자 하나)
+     *
+     * - 슬롯은 처음에 배열로 한번만 만들고 계속 재사용한다. (명령마다 큐 노드를 만들지 않는다.)
+     * - 생산자는 sequence 를 CAS 로 하나 받아서 슬롯을 채우고, 슬롯의 published 에 sequence 를 기록해서 공개한다.
+     * - 소비자는 published 가 자기 차례의 sequence 인 슬롯까지만 연속으로 꺼낸다. (먼저 받은 생산자가 늦게 채워도 순서가 지켜진다.)
+     * - 가득 차면 생산자는 기다리지 않고 바로 실패한다. (backpressure)
+     *
+     * 참고
+     * - 소비자가 하나이므로 consumed 는 소비자만 쓴다.
+     * - LMAX Disruptor 의 multi producer sequencer 를 단순하게 옮긴 것이다. (wait strategy, 여러 소비자 없음)
+     */
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int mask;
+    private final long[] published;
+    private final long[] ids;
+    private final long[] quantities;
+    private final CompletableFuture<?>[] futures;
+
+    // 다음에 줄 sequence
+    private final AtomicLong claimed = new AtomicLong();
+    // 다음에 꺼낼 sequence
+    private volatile long consumed;
+
+    public StockCommandRingBuffer(int capacity) {
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity 는 2의 거듭제곱이어야 합니다. capacity = " + capacity);
+
+        this.mask = capacity - 1;
+        this.published = new long[capacity];
+        this.ids = new long[capacity];
+        this.quantities = new long[capacity];
+        this.futures = new CompletableFuture<?>[capacity];
+
+        for (int i = 0; i < capacity; i++) {
+            published[i] = -1L;
+        }
+    }
+
+    /**
+     * @return 가득 차서 넣지 못했으면 false
+     */
+    public boolean tryPublish(long id, long quantity, CompletableFuture<?> future) {
+
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask)
+                return false;
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        ids[index] = id;
+        quantities[index] = quantity;
+        futures[index] = future;
+        // 위의 쓰기가 sequence 공개보다 먼저 보이도록 release 로 쓴다.
+        LONGS.setRelease(published, index, sequence);
+        return true;
+    }
+
+    /**
+     * 공개된 명령을 배열 크기만큼 꺼낸다. 소비자 스레드 하나에서만 호출한다.
+     *
+     * @return 꺼낸 명령 수
+     */
+    public int drainTo(long[] ids, long[] quantities, CompletableFuture<?>[] futures) {
+
+        long next = consumed;
+        int count = 0;
+        int max = Math.min(ids.length, Math.min(quantities.length, futures.length));
+
+        while (count < max) {
+            int index = (int) (next + count) & mask;
+            if ((long) LONGS.getAcquire(published, index) != next + count)
+                break;
+
+            ids[count] = this.ids[index];
+            quantities[count] = this.quantities[index];
+            futures[count] = this.futures[index];
+            this.futures[index] = null;
+            count++;
+        }
+
+        if (count > 0) {
+            // 슬롯을 다 읽은 뒤에 생산자에게 돌려준다.
+            consumed = next + count;
+        }
+        return count;
+    }
+
+    public int size() {
+        return (int) Math.max(0L, claimed.get() - consumed);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,216 @@
+package dev.practice.stock.support;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class StockCounterTable {
+
+    /**
+     * 재고 id(long) -> 수량(long) 락 없는 카운터 테이블
+     *
+     * - 키와 값을 long[] 에 그대로 담는다. (Long, Map.Entry 객체를 만들지 않는다.)
+     * - open addressing (linear probing), 용량은 2의 거듭제곱으로 고정한다. (resize 하지 않는다.)
+     * - 감소는 VarHandle CAS 루프로 처리하고, 0 보다 작아지는 감소는 거절한다.
+     * - 값 슬롯은 cache line(64 byte) 마다 하나씩 둔다. 서로 다른 재고의 CAS 가 같은 cache line 을 두고 경쟁하지 않는다. (false sharing)
+     * - 값이 바뀐 슬롯은 dirty 표시를 하고, checkpoint 가 dirty 인 슬롯만 꺼내간다.
+     *
+     * 참고
+     * - 키 슬롯은 등록할 때 한번만 CAS 로 채우고 지우지 않는다. (조회가 많고 쓰기는 처음 한번이므로 padding 하지 않는다.)
+     * - 키를 채운 뒤 값을 쓰기 전까지는 값이 UNINITIALIZED 이다. 그 사이에 들어온 요청은 값이 써질 때까지 잠깐 기다린다.
+     * - 재고 id 는 양수여야 한다. (0 은 빈 슬롯)
+     */
+
+    public static final long NOT_ENOUGH = -1L;
+    public static final long NOT_LOADED = -2L;
+
+    // long 8개 = 64 byte, 값 슬롯 하나가 cache line 하나를 차지한다.
+    private static final int PAD = 8;
+    private static final int QUANTITY = 0;
+    private static final int DIRTY = 1;
+
+    private static final long EMPTY = 0L;
+    private static final long UNINITIALIZED = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int mask;
+    private final int shift;
+    private final long[] keys;
+    private final long[] values;
+
+    public StockCounterTable(int capacity) {
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity 는 2의 거듭제곱이어야 합니다. capacity = " + capacity);
+
+        this.mask = capacity - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.keys = new long[capacity];
+        // 배열 앞뒤의 다른 객체와도 cache line 을 공유하지 않도록 한 줄씩 더 둔다.
+        this.values = new long[(capacity + 2) * PAD];
+
+        for (int slot = 0; slot < capacity; slot++) {
+            values[offset(slot) + QUANTITY] = UNINITIALIZED;
+        }
+    }
+
+    /**
+     * 재고를 등록한다. 이미 있으면 덮어쓰지 않는다.
+     *
+     * @return 등록했으면 true
+     */
+    public boolean putIfAbsent(long id, long quantity) {
+
+        if (id <= 0)
+            throw new IllegalArgumentException("재고 id 는 양수여야 합니다. id = " + id);
+
+        int slot = hash(id);
+        for (int probe = 0; probe <= mask; probe++, slot = (slot + 1) & mask) {
+            long key = (long) LONGS.getAcquire(keys, slot);
+
+            if (key == EMPTY) {
+                long witness = (long) LONGS.compareAndExchange(keys, slot, EMPTY, id);
+                if (witness == EMPTY) {
+                    LONGS.setRelease(values, offset(slot) + QUANTITY, quantity);
+                    return true;
+                }
+                key = witness;
+            }
+
+            if (key == id)
+                return false;
+        }
+
+        throw new IllegalStateException("counter table 이 가득 찼습니다. capacity = " + keys.length);
+    }
+
+    /**
+     * @return 감소 후 남은 재고, 재고 부족 시 NOT_ENOUGH, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long tryDecrement(long id, long quantity) {
+
+        int slot = indexOf(id);
+        if (slot < 0)
+            return NOT_LOADED;
+
+        int index = offset(slot) + QUANTITY;
+        long current = awaitInitialized(index);
+        while (true) {
+            if (current < quantity)
+                return NOT_ENOUGH;
+
+            long witness = (long) LONGS.compareAndExchange(values, index, current, current - quantity);
+            if (witness == current) {
+                markDirty(slot);
+                return current - quantity;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * 입고, 감소한 재고를 되돌릴 때 사용한다.
+     *
+     * @return 증가 후 재고, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long add(long id, long delta) {
+
+        int slot = indexOf(id);
+        if (slot < 0)
+            return NOT_LOADED;
+
+        int index = offset(slot) + QUANTITY;
+        awaitInitialized(index);
+        long updated = (long) LONGS.getAndAdd(values, index, delta) + delta;
+        markDirty(slot);
+        return updated;
+    }
+
+    /**
+     * @return 현재 재고, 등록되지 않은 재고면 NOT_LOADED
+     */
+    public long get(long id) {
+
+        int slot = indexOf(id);
+        return slot < 0 ? NOT_LOADED : awaitInitialized(offset(slot) + QUANTITY);
+    }
+
+    /**
+     * dirty 인 재고를 (id, 현재 수량) 으로 넘기고 dirty 표시를 지운다.
+     * - dirty 를 먼저 지우고 수량을 읽으므로, 읽은 뒤에 바뀐 재고는 다시 dirty 가 되어 다음 checkpoint 에서 꺼내진다.
+     *
+     * @return 넘긴 재고 수
+     */
+    public int drainDirty(CounterConsumer consumer) {
+
+        int drained = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            int offset = offset(slot);
+
+            if ((long) LONGS.getOpaque(values, offset + DIRTY) == 0L)
+                continue;
+            if ((long) LONGS.getAndSet(values, offset + DIRTY, 0L) == 0L)
+                continue;
+
+            consumer.accept((long) LONGS.getAcquire(keys, slot), (long) LONGS.getVolatile(values, offset + QUANTITY));
+            drained++;
+        }
+        return drained;
+    }
+
+    // checkpoint 에 실패한 재고를 다시 dirty 로 표시한다.
+    public void markDirty(long id) {
+        int slot = indexOf(id);
+        if (slot >= 0) {
+            markDirty(slot);
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private void markDirty(int slot) {
+        int index = offset(slot) + DIRTY;
+        // 이미 dirty 면 쓰지 않는다. (감소 때마다 cache line 을 다시 쓰지 않도록)
+        if ((long) LONGS.getOpaque(values, index) == 0L) {
+            LONGS.setVolatile(values, index, 1L);
+        }
+    }
+
+    private int indexOf(long id) {
+
+        int slot = hash(id);
+        for (int probe = 0; probe <= mask; probe++, slot = (slot + 1) & mask) {
+            long key = (long) LONGS.getAcquire(keys, slot);
+            if (key == id)
+                return slot;
+            if (key == EMPTY)
+                return -1;
+        }
+        return -1;
+    }
+
+    private long awaitInitialized(int index) {
+        long value;
+        while ((value = (long) LONGS.getVolatile(values, index)) == UNINITIALIZED) {
+            Thread.onSpinWait();
+        }
+        return value;
+    }
+
+    // 연속된 id 가 연속된 슬롯에 몰리지 않도록 섞는다. (fibonacci hashing)
+    private int hash(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    private static int offset(int slot) {
+        return (slot + 1) * PAD;
+    }
+
+    @FunctionalInterface
+    public interface CounterConsumer {
+
+        void accept(long id, long quantity);
+    }
+}
@@ -0,0 +1,260 @@
+package dev.practice.stock.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class StockJournal implements AutoCloseable {
+
+    /**
+     * 재고 감소를 기록하는 append-only 파일 (memory-mapped)
+     *
+     * - 파일 전체를 mmap 해두고 레코드를 메모리에 쓰듯이 이어붙인다. (write 시스템 콜 없음)
+     * - force() 는 batch 마다 한번만 호출한다. (group fsync, 레코드마다 fsync 하지 않는다.)
+     * - header 에 DB 에 반영된 마지막 sequence(checkpoint)를 기록한다. 재시작 시 그 이후의 레코드만 다시 적용한다.
+     * - - DB 반영과 header 기록은 따로 이루어지므로, 그 사이에 죽으면 header 는 이전 값이다.
+     * - - 그래서 DB 트랜잭션 안에 checkpoint 를 같이 기록하는 쪽은 그 값을 replay(checkpoint, ...) 로 넘긴다. (header 보다 우선)
+     *
+     * 파일 구조
+     * - header (64 byte) : magic, checkpoint sequence
+     * - record (32 byte) : sequence, 재고 id, 감소량, checksum
+     *
+     * 참고
+     * - 쓰는 도중 죽어서 일부만 기록된 레코드는 checksum 이 맞지 않으므로 거기서 replay 를 멈춘다.
+     * - 파일 크기는 고정이다. 가득 차면 DB 에 모두 반영(checkpoint)한 뒤 reset 으로 처음부터 다시 쓴다.
+     * - - reset 이후 앞쪽 레코드는 sequence 가 이어지므로, 뒤에 남은 이전 레코드는 sequence 가 끊기는 곳에서 걸러진다.
+     * - 파일 lock 을 잡으므로 같은 파일을 두 곳에서 열 수 없다.
+     * - append, force, rollback, reset 은 한 스레드에서만 호출한다. markCheckpoint 는 다른 스레드에서 호출해도 된다.
+     */
+
+    private static final long MAGIC = 0x53544F434B4A524EL; // "STOCKJRN"
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CHECKPOINT_OFFSET = 8;
+
+    private static final int RECORD_SIZE = 32;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private int position = HEADER_SIZE;
+    private long lastSequence;
+
+    // 마지막으로 force 에 성공한 시점의 위치, rollback 은 여기로 되돌린다.
+    private int forcedPosition = HEADER_SIZE;
+    private long forcedSequence;
+
+    /**
+     * @return sizeBytes 크기의 journal 에 reset 없이 기록할 수 있는 레코드 수
+     */
+    public static int recordCapacity(int sizeBytes) {
+        return Math.max(0, (sizeBytes - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    public StockJournal(Path path, int sizeBytes) {
+
+        if (sizeBytes < HEADER_SIZE + RECORD_SIZE)
+            throw new IllegalArgumentException("journal 크기가 너무 작습니다. sizeBytes = " + sizeBytes);
+
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = tryLock(channel, path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("journal 을 열 수 없습니다. path = " + path, e);
+        }
+
+        // header 뒤에 레코드가 정확히 들어가는 크기까지만 쓴다.
+        this.capacity = HEADER_SIZE + (sizeBytes - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+
+        long magic = buffer.getLong(MAGIC_OFFSET);
+        if (magic == 0L) {
+            buffer.putLong(MAGIC_OFFSET, MAGIC);
+            buffer.putLong(CHECKPOINT_OFFSET, 0L);
+            buffer.force(0, HEADER_SIZE);
+        } else if (magic != MAGIC) {
+            throw new IllegalStateException("journal 파일이 아닙니다. path = " + path);
+        }
+
+        this.lastSequence = checkpointSequence();
+        this.forcedSequence = lastSequence;
+    }
+
+    /**
+     * header 의 checkpoint 이후의 레코드를 순서대로 넘기고, 마지막 레코드 뒤부터 이어 쓰도록 위치를 맞춘다.
+     * - 시작할 때 append 전에 한번만 호출한다.
+     *
+     * @return 다시 적용한 레코드 수
+     */
+    public int replay(RecordConsumer consumer) {
+        return replay(checkpointSequence(), consumer);
+    }
+
+    /**
+     * 주어진 checkpoint 이후의 레코드를 순서대로 넘긴다. checkpoint 는 header 에도 기록한다.
+     * - checkpoint 이전의 sequence 는 다시 사용하지 않는다. (checkpoint 이후 레코드가 없어도 그 다음 sequence 부터 쓴다.)
+     *
+     * @return 다시 적용한 레코드 수
+     */
+    public int replay(long checkpoint, RecordConsumer consumer) {
+
+        markCheckpoint(checkpoint);
+        lastSequence = Math.max(lastSequence, checkpoint);
+
+        int replayed = 0;
+        int end = HEADER_SIZE;
+        long previous = -1L;
+
+        for (int offset = HEADER_SIZE; offset < capacity; offset += RECORD_SIZE) {
+            long sequence = buffer.getLong(offset);
+            long id = buffer.getLong(offset + 8);
+            long quantity = buffer.getLong(offset + 16);
+
+            if (sequence <= 0L || buffer.getLong(offset + 24) != checksum(sequence, id, quantity))
+                break;
+            if (previous != -1L && sequence != previous + 1)
+                break;
+            previous = sequence;
+
+            if (sequence > checkpoint) {
+                consumer.accept(sequence, id, quantity);
+                replayed++;
+                end = offset + RECORD_SIZE;
+                lastSequence = sequence;
+            }
+        }
+
+        // checkpoint 이후 레코드가 없으면 전부 DB 에 반영된 것이므로 처음부터 쓴다.
+        position = end;
+        forcedPosition = position;
+        forcedSequence = lastSequence;
+        return replayed;
+    }
+
+    /**
+     * @return 레코드의 sequence
+     */
+    public long append(long id, long quantity) {
+
+        if (!hasRemaining(1))
+            throw new IllegalStateException("journal 이 가득 찼습니다.");
+
+        long sequence = ++lastSequence;
+        buffer.putLong(position, sequence);
+        buffer.putLong(position + 8, id);
+        buffer.putLong(position + 16, quantity);
+        buffer.putLong(position + 24, checksum(sequence, id, quantity));
+        position += RECORD_SIZE;
+        return sequence;
+    }
+
+    public boolean hasRemaining(int records) {
+        return capacity - position >= (long) records * RECORD_SIZE;
+    }
+
+    /**
+     * 마지막 force 이후에 쓴 레코드를 디스크에 반영한다.
+     */
+    public void force() {
+        buffer.force();
+        forcedPosition = position;
+        forcedSequence = lastSequence;
+    }
+
+    /**
+     * 마지막 force 이후에 쓴 레코드를 지우고 그 위치로 되돌린다. force 에 실패했을 때 호출한다.
+     * - 되돌리지 않으면 다음 batch 가 그 뒤에 이어 쓰고, 다음 force 가 성공할 때 실패로 응답한 감소까지 같이 기록된다. (재시작 시 다시 적용)
+     * - 지운 내용은 다음 force 때 디스크에 반영된다. 그 전에 OS 가 죽으면 page cache 에서 먼저 내려간 레코드가 남을 수 있다.
+     */
+    public void rollback() {
+        for (int offset = forcedPosition; offset < position; offset += 8) {
+            buffer.putLong(offset, 0L);
+        }
+        position = forcedPosition;
+        lastSequence = forcedSequence;
+    }
+
+    /**
+     * sequence 까지 DB 에 반영되었음을 기록한다. 이전 값보다 작으면 무시한다.
+     */
+    public synchronized void markCheckpoint(long sequence) {
+        if (sequence > checkpointSequence()) {
+            buffer.putLong(CHECKPOINT_OFFSET, sequence);
+            buffer.force(0, HEADER_SIZE);
+        }
+    }
+
+    /**
+     * 모든 레코드가 DB 에 반영되었을 때만 처음부터 다시 쓴다.
+     */
+    public void reset() {
+        if (checkpointSequence() < lastSequence)
+            throw new IllegalStateException("checkpoint 되지 않은 레코드가 있습니다. checkpoint = "
+                    + checkpointSequence() + ", last = " + lastSequence);
+
+        position = HEADER_SIZE;
+        forcedPosition = HEADER_SIZE;
+        forcedSequence = lastSequence;
+    }
+
+    public synchronized long checkpointSequence() {
+        return buffer.getLong(CHECKPOINT_OFFSET);
+    }
+
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 두 writer 가 같은 파일에 쓰면 sequence 가 섞이므로 프로세스(JVM 안의 다른 인스턴스 포함) 하나만 연다.
+    private static FileLock tryLock(FileChannel channel, Path path) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("다른 곳에서 사용 중인 journal 입니다. path = " + path);
+        }
+        return lock;
+    }
+
+    private static long checksum(long sequence, long id, long quantity) {
+        long hash = MAGIC;
+        hash = (hash ^ sequence) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ id) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ quantity) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+
+        void accept(long sequence, long id, long quantity);
+    }
+}
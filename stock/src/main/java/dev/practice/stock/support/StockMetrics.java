@@ -0,0 +1,161 @@
+package dev.practice.stock.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class StockMetrics {
+
+    /**
+     * 재고 감소 전략별 지표 (actuator /actuator/prometheus 로 노출)
+     *
+     * - stock.lock.wait : 락 획득까지 대기 시간
+     * - stock.lock.hold : 락 획득 ~ 해제 시간
+     * - stock.transaction : DB 트랜잭션 시간 (commit 포함)
+     * - stock.retries : 성공 1건 당 재시도(스핀) 횟수
+     * - stock.lock.failures : 락 획득 실패 횟수 (timeout, 재시도 초과)
+     * - stock.insufficient : 재고 부족으로 거절된 횟수
+     * - stock.partition.queue.depth : partition 별 대기열 길이 (partition 태그)
+     *
+     * 태그
+     * - strategy : 전략 이름
+     * - stock : 재고 id 의 hash bucket (stock.metrics.stock-id-buckets > 1 일 때만, 아니면 all)
+     * - - 재고 id 를 그대로 태그로 쓰면 시계열이 재고 수 만큼 늘어나므로 bucket 으로 묶는다.
+     *
+     * 참고
+     * - 미터는 전략 별로 처음 한번만 등록하고 배열에 담아두므로, 기록할 때는 배열 접근 + 기록만 한다.
+     */
+
+    private final MeterRegistry meterRegistry;
+    private final int stockIdBuckets;
+
+    private final ConcurrentHashMap<String, StrategyMeters> meters = new ConcurrentHashMap<>();
+
+    public StockMetrics(MeterRegistry meterRegistry,
+                        @Value("${stock.metrics.stock-id-buckets:1}") int stockIdBuckets) {
+        this.meterRegistry = meterRegistry;
+        this.stockIdBuckets = Math.max(1, stockIdBuckets);
+    }
+
+    public void recordLockWait(String strategy, Long id, long startNanos) {
+        of(strategy).lockWait[bucket(id)].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLockHold(String strategy, Long id, long startNanos) {
+        of(strategy).lockHold[bucket(id)].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTransaction(String strategy, Long id, long startNanos) {
+        of(strategy).transaction[bucket(id)].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @Transactional 메서드 안에서 호출하면, 호출 시점부터 트랜잭션이 끝날 때(commit or rollback) 까지의 시간을 기록한다.
+     * - 커넥션 획득, 트랜잭션 시작은 포함되지 않는다.
+     */
+    public void timeTransaction(String strategy, Long id) {
+        long startNanos = System.nanoTime();
+        afterCompletion(() -> recordTransaction(strategy, id, startNanos));
+    }
+
+    /**
+     * DB 락(select ... for update)은 트랜잭션이 끝날 때 해제되므로, 락 획득 직후에 호출한다.
+     */
+    public void timeLockHold(String strategy, Long id) {
+        long startNanos = System.nanoTime();
+        afterCompletion(() -> recordLockHold(strategy, id, startNanos));
+    }
+
+    public void recordRetries(String strategy, Long id, long retries) {
+        of(strategy).retries[bucket(id)].record(retries);
+    }
+
+    public void incrementLockFailure(String strategy, Long id) {
+        of(strategy).lockFailures[bucket(id)].increment();
+    }
+
+    public void incrementInsufficient(String strategy, Long id) {
+        of(strategy).insufficient[bucket(id)].increment();
+    }
+
+    public void gaugeQueueDepth(String strategy, String partition, Collection<?> queue) {
+        Gauge.builder("stock.partition.queue.depth", queue, Collection::size)
+                .tag("strategy", strategy)
+                .tag("partition", partition)
+                .register(meterRegistry);
+    }
+
+    private void afterCompletion(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                runnable.run();
+            }
+        });
+    }
+
+    private StrategyMeters of(String strategy) {
+        StrategyMeters strategyMeters = meters.get(strategy);
+        return strategyMeters != null ? strategyMeters : meters.computeIfAbsent(strategy, StrategyMeters::new);
+    }
+
+    private int bucket(Long id) {
+        return (stockIdBuckets == 1 || id == null) ? 0 : Math.floorMod(Long.hashCode(id), stockIdBuckets);
+    }
+
+    private final class StrategyMeters {
+
+        private final Timer[] lockWait = new Timer[stockIdBuckets];
+        private final Timer[] lockHold = new Timer[stockIdBuckets];
+        private final Timer[] transaction = new Timer[stockIdBuckets];
+        private final DistributionSummary[] retries = new DistributionSummary[stockIdBuckets];
+        private final Counter[] lockFailures = new Counter[stockIdBuckets];
+        private final Counter[] insufficient = new Counter[stockIdBuckets];
+
+        private StrategyMeters(String strategy) {
+            for (int i = 0; i < stockIdBuckets; i++) {
+                String stock = stockIdBuckets == 1 ? "all" : String.valueOf(i);
+
+                lockWait[i] = timer("stock.lock.wait", strategy, stock);
+                lockHold[i] = timer("stock.lock.hold", strategy, stock);
+                transaction[i] = timer("stock.transaction", strategy, stock);
+                retries[i] = DistributionSummary.builder("stock.retries")
+                        .tag("strategy", strategy)
+                        .tag("stock", stock)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+                lockFailures[i] = counter("stock.lock.failures", strategy, stock);
+                insufficient[i] = counter("stock.insufficient", strategy, stock);
+            }
+        }
+
+        private Timer timer(String name, String strategy, String stock) {
+            return Timer.builder(name)
+                    .tag("strategy", strategy)
+                    .tag("stock", stock)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private Counter counter(String name, String strategy, String stock) {
+            return Counter.builder(name)
+                    .tag("strategy", strategy)
+                    .tag("stock", stock)
+                    .register(meterRegistry);
+        }
+    }
+}
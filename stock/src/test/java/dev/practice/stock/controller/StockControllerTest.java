@@ -0,0 +1,178 @@
+package dev.practice.stock.controller;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// 락 획득 실패(timeout) 테스트가 5초씩 기다리지 않도록 redisson 락 대기 시간을 줄인다.
+@SpringBootTest(properties = "stock.redisson.wait-millis=200")
+@AutoConfigureMockMvc
+class StockControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() throws Exception {
+
+        MvcResult result = mockMvc.perform(post("/stocks/{id}/decrease", testId)
+                        .param("quantity", "10")
+                        .param("strategy", "PESSIMISTIC"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 재고 부족은 409
+    @Test
+    void decreaseStockWhenNotEnough() throws Exception {
+
+        MvcResult result = mockMvc.perform(post("/stocks/{id}/decrease", testId)
+                        .param("quantity", "101")
+                        .param("strategy", "CONDITIONAL"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+    }
+
+    // 락 획득 실패(timeout)는 503, 재고는 감소하지 않는다.
+    @Test
+    void decreaseStockWhenLockTimeout() throws Exception {
+
+        // 테스트 스레드가 락을 잡고 있으므로 stockTaskExecutor 스레드는 획득하지 못한다.
+        RLock lock = redissonClient.getLock("lock:" + testId);
+        lock.lock();
+        try {
+            MvcResult result = mockMvc.perform(post("/stocks/{id}/decrease", testId)
+                            .param("quantity", "10")
+                            .param("strategy", "REDISSON"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            lock.unlock();
+        }
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 여러 재고 감소
+    @Test
+    void decreaseStocks() throws Exception {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        MvcResult result = mockMvc.perform(post("/stocks/decrease")
+                        .param("strategy", "PESSIMISTIC")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\":%d,\"quantity\":10},{\"id\":%d,\"quantity\":20}]".formatted(testId, otherId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(80L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
+    // 수량이 0 이하면 facade 로 넘기지 않고 400
+    @Test
+    void decreaseStockWhenInvalidQuantity() throws Exception {
+
+        mockMvc.perform(post("/stocks/{id}/decrease", testId)
+                        .param("quantity", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/stocks/{id}/decrease", testId)
+                        .param("quantity", "-1"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 빈 주문, 수량이 없는 줄, null 줄은 400
+    @Test
+    void decreaseStocksWhenInvalidCommands() throws Exception {
+
+        for (String content : new String[]{
+                "[]",
+                "[{\"id\":%d}]".formatted(testId),
+                "[{\"id\":%d,\"quantity\":0}]".formatted(testId),
+                "[null]"}) {
+            mockMvc.perform(post("/stocks/decrease")
+                            .param("strategy", "REDISSON")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(content))
+                    .andExpect(status().isBadRequest());
+        }
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 조회
+    @Test
+    void getStock() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/stocks/{id}", testId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(testId))
+                .andExpect(jsonPath("$.quantity").value(100L));
+    }
+}
@@ -1,7 +1,12 @@
 package dev.practice.stock.facade;
 
 import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.RedisLockReleaseSubscriber;
+import dev.practice.stock.repository.RedisLockRepository;
 import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.service.StockDecreaseCommand;
+import dev.practice.stock.service.StockService;
+import dev.practice.stock.support.StockMetrics;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,11 +14,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class StockFacadeWithLettuceLockTest {
@@ -24,6 +31,18 @@ class StockFacadeWithLettuceLockTest {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private RedisLockRepository redisLockRepository;
+
+    @Autowired
+    private RedisLockReleaseSubscriber redisLockReleaseSubscriber;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private StockMetrics stockMetrics;
+
     private Long testId = 1L;
 
     @BeforeEach
@@ -56,6 +75,116 @@ class StockFacadeWithLettuceLockTest {
         assertEquals(90L, stock.getQuantity());
     }
 
+    // 여러 재고 감소 기능 테스트
+    @Test
+    void decreaseStocks() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        stockFacadeWithLettuceLock.decreaseStocks(List.of(
+                new StockDecreaseCommand(otherId, 20L),
+                new StockDecreaseCommand(testId, 10L)));
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(80L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
+    // 여러 재고 락은 모두 잡거나 하나도 잡지 않고, owner 가 같을 때만 해제된다.
+    @Test
+    void getLocks() {
+
+        Long otherId = testId + 1;
+
+        Assertions.assertThat(redisLockRepository.getLock(otherId)).isTrue();
+        try {
+            Assertions.assertThat(redisLockRepository.getLocks(List.of(testId, otherId), "owner-1")).isFalse();
+            Assertions.assertThat(redisLockRepository.isLocked(List.of(testId, otherId))).containsExactly(false, true);
+        } finally {
+            redisLockRepository.releaseLock(otherId);
+        }
+
+        Assertions.assertThat(redisLockRepository.getLocks(List.of(testId, otherId), "owner-1")).isTrue();
+        Assertions.assertThat(redisLockRepository.isLocked(List.of(testId, otherId))).containsExactly(true, true);
+
+        assertEquals(0L, redisLockRepository.releaseLocks(List.of(testId, otherId), "owner-2"));
+        assertEquals(2L, redisLockRepository.releaseLocks(List.of(testId, otherId), "owner-1"));
+        Assertions.assertThat(redisLockRepository.isLocked(List.of(testId, otherId))).containsExactly(false, false);
+    }
+
+    // 여러 재고 락을 해제하면 해제한 재고마다 lock-release 채널로 알린다.
+    @Test
+    void releaseLocksAndNotify() throws InterruptedException {
+
+        RedisLockReleaseSubscriber.Signal signal = redisLockReleaseSubscriber.register(testId);
+        try {
+            long seen = signal.generation();
+
+            assertTrue(redisLockRepository.getLocks(List.of(testId, testId + 1), "owner-1"));
+            assertEquals(2L, redisLockRepository.releaseLocks(List.of(testId, testId + 1), "owner-1"));
+
+            signal.await(seen, 3000L);
+            Assertions.assertThat(signal.generation()).isGreaterThan(seen);
+        } finally {
+            redisLockReleaseSubscriber.unregister(testId);
+        }
+    }
+
+    // wait millis 안에 락을 모두 잡지 못하면 감소하지 않고 실패한다. (503)
+    @Test
+    void decreaseStocksTimeout() {
+
+        StockFacadeWithLettuceLock facade = new StockFacadeWithLettuceLock(stockService, redisLockRepository, stockMetrics, 300L);
+
+        assertTrue(redisLockRepository.getLock(testId));
+        try {
+            Assertions.assertThatThrownBy(() -> facade.decreaseStocks(List.of(new StockDecreaseCommand(testId, 10L))))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            redisLockRepository.releaseLock(testId);
+        }
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 여러 재고 감소 동시성 문제 해결, 순서가 다른 요청끼리도 데드락 없이 처리된다.
+    @Test
+    void concurrencyTestByDecreaseStocks() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        int threadCount = 50;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            List<StockDecreaseCommand> commands = i % 2 == 0
+                    ? List.of(new StockDecreaseCommand(testId, 1L), new StockDecreaseCommand(otherId, 2L))
+                    : List.of(new StockDecreaseCommand(otherId, 2L), new StockDecreaseCommand(testId, 1L));
+            executorService.execute(() -> {
+                try {
+                    stockFacadeWithLettuceLock.decreaseStocks(commands);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        assertEquals(50L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(0L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
     // 동시성 문제 해결
     @Test
     void concurrencyTestByThread100() {
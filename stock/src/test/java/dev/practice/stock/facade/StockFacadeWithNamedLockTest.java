@@ -2,6 +2,7 @@ package dev.practice.stock.facade;
 
 import dev.practice.stock.domain.Stock;
 import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.service.StockDecreaseCommand;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -57,6 +59,23 @@ class StockFacadeWithNamedLockTest {
         assertEquals(90L, stock.getQuantity());
     }
 
+    // 여러 재고 감소 기능 테스트
+    @Test
+    void decreaseStocks() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        stockFacadeWithNamedLock.decreaseStocks(List.of(
+                new StockDecreaseCommand(otherId, 20L),
+                new StockDecreaseCommand(testId, 10L)));
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(80L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
     // 동시성 문제 해결
     @Test
     void concurrencyTestByThread100() {
@@ -66,6 +66,7 @@ class StockFacadeWithOptimisticLockTest {
         int threadCount = 100;
         ExecutorService executorService = Executors.newFixedThreadPool(32);
         CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+        long successesBefore = stockFacadeWithOptimisticLock.getRetryStatistics().getSuccesses();
 
         for (int i = 0; i < threadCount; i++) {
             executorService.execute(() -> {
@@ -89,8 +90,10 @@ class StockFacadeWithOptimisticLockTest {
 
         System.out.println("stock.getQuantity() = " + stockWithVersion.getQuantity());
         System.out.println("stock.getVersion() = " + stockWithVersion.getVersion());
+        System.out.println("attemptsPerSuccess = " + stockFacadeWithOptimisticLock.getRetryStatistics().getAttemptsPerSuccess());
 
         Assertions.assertThat(stockWithVersion.getQuantity()).isEqualTo(0L);
+        Assertions.assertThat(stockFacadeWithOptimisticLock.getRetryStatistics().getSuccesses() - successesBefore).isEqualTo(threadCount);
     }
 
 }
\ No newline at end of file
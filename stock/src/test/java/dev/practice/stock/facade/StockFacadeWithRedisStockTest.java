@@ -0,0 +1,110 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.RedisStockRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.service.StockWriteBehindService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockFacadeWithRedisStockTest {
+
+    @Autowired
+    private StockFacadeWithRedisStock stockFacadeWithRedisStock;
+
+    @Autowired
+    private StockWriteBehindService stockWriteBehindService;
+
+    @Autowired
+    private RedisStockRepository redisStockRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+        testId = stock.getId();
+
+        System.out.println("testId = " + testId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisStockRepository.delete(testId);
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() {
+
+        stockFacadeWithRedisStock.decreaseStock(testId, 10L);
+
+        assertEquals(90L, redisStockRepository.getQuantity(testId));
+
+        stockWriteBehindService.flush();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        assertEquals(90L, stock.getQuantity());
+    }
+
+    // 동시성 문제 해결, 재고 보다 많은 요청이 와도 음수가 되지 않는다.
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 110;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+        AtomicInteger failCount = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockFacadeWithRedisStock.decreaseStock(testId, 1L);
+                } catch (IllegalArgumentException e) {
+                    failCount.incrementAndGet();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockWriteBehindService.flush();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        System.out.println("stock.getQuantity() = " + stock.getQuantity());
+
+        Assertions.assertThat(redisStockRepository.getQuantity(testId)).isEqualTo(0L);
+        Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
+        Assertions.assertThat(failCount.get()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,122 @@
+package dev.practice.stock.facade;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.RedissonStockSemaphoreRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.service.StockSemaphoreWriteBehindService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockFacadeWithRedissonSemaphoreTest {
+
+    @Autowired
+    private StockFacadeWithRedissonSemaphore stockFacadeWithRedissonSemaphore;
+
+    @Autowired
+    private StockSemaphoreWriteBehindService stockSemaphoreWriteBehindService;
+
+    @Autowired
+    private RedissonStockSemaphoreRepository redissonStockSemaphoreRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+        testId = stock.getId();
+
+        System.out.println("testId = " + testId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redissonStockSemaphoreRepository.delete(testId);
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() {
+
+        stockFacadeWithRedissonSemaphore.decreaseStock(testId, 10L);
+
+        assertEquals(90L, redissonStockSemaphoreRepository.getQuantity(testId));
+
+        stockSemaphoreWriteBehindService.flush();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        assertEquals(90L, stock.getQuantity());
+    }
+
+    // 반영 전에 종료되어 dirty 가 사라져도, 시작 시 reconcile 이 redis 수량을 DB 에 반영한다.
+    @Test
+    void reconcile() {
+
+        redissonStockSemaphoreRepository.load(testId, 100L);
+        redissonStockSemaphoreRepository.tryAcquire(testId, 30);
+
+        stockSemaphoreWriteBehindService.reconcile();
+
+        assertEquals(70L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 동시성 문제 해결, 재고 보다 많은 요청이 와도 음수가 되지 않는다.
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 110;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+        AtomicInteger failCount = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockFacadeWithRedissonSemaphore.decreaseStock(testId, 1L);
+                } catch (IllegalArgumentException e) {
+                    failCount.incrementAndGet();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockSemaphoreWriteBehindService.flush();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        System.out.println("stock.getQuantity() = " + stock.getQuantity());
+
+        Assertions.assertThat(redissonStockSemaphoreRepository.getQuantity(testId)).isEqualTo(0L);
+        Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
+        Assertions.assertThat(failCount.get()).isEqualTo(10);
+    }
+}
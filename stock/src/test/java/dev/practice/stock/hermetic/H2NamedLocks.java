@@ -0,0 +1,96 @@
+package dev.practice.stock.hermetic;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public final class H2NamedLocks {
+
+    /**
+     * H2 에서 MySQL 의 get_lock, release_lock 을 흉내낸다. (hermetic 프로필, hermetic/h2-init.sql 에서 alias 로 등록)
+     *
+     * - MySQL 과 같이 락은 세션(커넥션) 단위이다. H2 의 session_id() 로 소유 세션을 구분한다.
+     * - 같은 세션은 같은 락을 여러번 획득할 수 있고, 획득한 횟수만큼 해제해야 풀린다. (MySQL 5.7 이후 동작)
+     * - get_lock 반환값 : 1 획득, 0 timeout, null 에러(인터럽트)
+     * - release_lock 반환값 : 1 해제, 0 다른 세션의 락, null 없는 락
+     *
+     * 참고
+     * - 세션이 끊겨도 락이 자동으로 풀리지 않는다. (커넥션 풀이 커넥션을 닫지 않으므로 테스트에서는 문제가 없다.)
+     */
+
+    private static final Map<String, Holder> LOCKS = new HashMap<>();
+
+    private H2NamedLocks() {
+    }
+
+    public static Integer getLock(Connection connection, String key, int timeoutSeconds) throws SQLException {
+
+        int session = sessionId(connection);
+        // MySQL 과 같이 음수는 무한 대기
+        long deadline = timeoutSeconds < 0 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        synchronized (LOCKS) {
+            Holder holder;
+            while ((holder = LOCKS.get(key)) != null && holder.session != session) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    return 0;
+
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(LOCKS, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
+            if (holder == null) {
+                LOCKS.put(key, new Holder(session));
+            } else {
+                holder.count++;
+            }
+            return 1;
+        }
+    }
+
+    public static Integer releaseLock(Connection connection, String key) throws SQLException {
+
+        int session = sessionId(connection);
+
+        synchronized (LOCKS) {
+            Holder holder = LOCKS.get(key);
+            if (holder == null)
+                return null;
+            if (holder.session != session)
+                return 0;
+
+            if (--holder.count == 0) {
+                LOCKS.remove(key);
+                LOCKS.notifyAll();
+            }
+            return 1;
+        }
+    }
+
+    private static int sessionId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select session_id()")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static final class Holder {
+
+        private final int session;
+        private int count = 1;
+
+        private Holder(int session) {
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dev.practice.stock.hermetic;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+public class HermeticRedisEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    /**
+     * hermetic 프로필이면 프로세스 안에서 redis 프로토콜 서버(jedis-mock)를 띄우고 spring.data.redis 를 그 포트로 바꾼다.
+     *
+     * - 포트는 비어있는 포트(0)로 받으므로 local redis 와 충돌하지 않는다.
+     * - 테스트마다 context 가 여러개 생겨도 JVM 당 서버는 하나만 띄운다. (JVM 종료 시 정지)
+     * - META-INF/spring.factories 로 등록한다.
+     *
+     * 참고
+     * - jedis-mock 은 lua script(eval, evalsha), pub/sub, scan 을 지원하므로 redis 를 쓰는 전략들이 그대로 동작한다.
+     * - 명령어를 하나씩 순서대로 처리하므로 처리량은 실제 redis 와 다르다. 전략 간 비교용으로만 쓴다.
+     */
+
+    private static final String PROFILE = "hermetic";
+
+    private static RedisServer server;
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+
+        if (!environment.matchesProfiles(PROFILE))
+            return;
+
+        int port = start();
+        environment.getPropertySources().addFirst(new MapPropertySource("hermeticRedis", Map.of(
+                "spring.data.redis.host", "127.0.0.1",
+                "spring.data.redis.port", port)));
+    }
+
+    private static synchronized int start() {
+        if (server == null) {
+            try {
+                RedisServer redisServer = RedisServer.newRedisServer(0).start();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> stopQuietly(redisServer)));
+                server = redisServer;
+            } catch (IOException e) {
+                throw new UncheckedIOException("hermetic redis 시작 실패", e);
+            }
+        }
+        return server.getBindPort();
+    }
+
+    private static void stopQuietly(RedisServer redisServer) {
+        try {
+            redisServer.stop();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockInvalidationSubscriber;
+import dev.practice.stock.repository.StockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockReadServiceTest {
+
+    @Autowired
+    private StockReadService stockReadService;
+
+    @Autowired
+    private StockServiceWithPessimisticLock stockServiceWithPessimisticLock;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StockInvalidationSubscriber stockInvalidationSubscriber;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockReadService.evict(testId);
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 허용 지연 이내면 DB 가 바뀌어도 캐시 값을 읽는다.
+    @Test
+    void getQuantityFromCache() {
+
+        assertEquals(100L, stockReadService.getQuantity(testId, 60_000L));
+
+        // 이벤트 없이 DB 만 바꾼다.
+        transactionTemplate.executeWithoutResult(status -> stockRepository.decreaseQuantity(testId, 10L));
+
+        assertEquals(100L, stockReadService.getQuantity(testId, 60_000L));
+        assertEquals(90L, stockReadService.getQuantity(testId, 0L));
+        assertEquals(90L, stockReadService.getQuantityAuthoritative(testId));
+    }
+
+    // 재고가 감소하면 commit 이후 캐시가 비워진다.
+    @Test
+    void evictAfterDecrease() {
+
+        assertEquals(100L, stockReadService.getQuantity(testId, 60_000L));
+
+        stockServiceWithPessimisticLock.decreaseStock(testId, 10L);
+
+        assertEquals(90L, stockReadService.getQuantity(testId, 60_000L));
+    }
+
+    // 다른 노드가 모아서 보낸 무효화 메시지의 재고 id 를 모두 비운다.
+    @Test
+    void evictByBatchedMessage() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        assertEquals(100L, stockReadService.getQuantity(testId, 60_000L));
+        assertEquals(100L, stockReadService.getQuantity(otherId, 60_000L));
+
+        // 이벤트 없이 DB 만 바꾸고, 무효화 메시지를 받는다.
+        transactionTemplate.executeWithoutResult(status -> {
+            stockRepository.decreaseQuantity(testId, 10L);
+            stockRepository.decreaseQuantity(otherId, 20L);
+        });
+        stockInvalidationSubscriber.onMessage(new DefaultMessage(
+                StockInvalidationSubscriber.INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                (testId + "," + otherId).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(90L, stockReadService.getQuantity(testId, 60_000L));
+        assertEquals(80L, stockReadService.getQuantity(otherId, 60_000L));
+    }
+}
@@ -0,0 +1,141 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.domain.StockReservationStatus;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.repository.StockReservationRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "stock.reservation.ttl-millis=500",
+        "stock.reservation.tick-millis=10"
+})
+class StockReservationServiceTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockReservationRepository.deleteAllInBatch();
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 예약 후 확정하면 감소한 수량이 유지된다.
+    @Test
+    void reserveAndConfirm() throws InterruptedException {
+
+        Long reservationId = stockReservationService.reserve(testId, 10L);
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        stockReservationService.confirm(reservationId);
+        Thread.sleep(1000L);
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(StockReservationStatus.CONFIRMED, stockReservationRepository.findById(reservationId).orElseThrow().getStatus());
+    }
+
+    // 예약 후 취소하면 수량이 반환된다.
+    @Test
+    void reserveAndCancel() {
+
+        Long reservationId = stockReservationService.reserve(testId, 10L);
+
+        stockReservationService.cancel(reservationId);
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        Assertions.assertThatThrownBy(() -> stockReservationService.confirm(reservationId))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ttl 이 지나면 만료되고 수량이 반환된다.
+    @Test
+    void expire() throws InterruptedException {
+
+        Long reservationId = stockReservationService.reserve(testId, 10L);
+
+        Thread.sleep(1500L);
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(StockReservationStatus.EXPIRED, stockReservationRepository.findById(reservationId).orElseThrow().getStatus());
+        Assertions.assertThatThrownBy(() -> stockReservationService.confirm(reservationId))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 수량이 0 이하인 예약은 거절하고, 재고도 예약도 바뀌지 않는다.
+    @Test
+    void reserveWithInvalidQuantity() {
+
+        Assertions.assertThatThrownBy(() -> stockReservationService.reserve(testId, 0L))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> stockReservationService.reserve(testId, -10L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(0L, stockReservationRepository.count());
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockReservationService.confirm(stockReservationService.reserve(testId, 1L));
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        System.out.println("stock.getQuantity() = " + stock.getQuantity());
+
+        Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,96 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithAllotmentTest {
+
+    @Autowired
+    private StockServiceWithAllotment stockServiceWithAllotment;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockServiceWithAllotment.releaseAll();
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트, 할당받은 만큼만 DB 에서 빠지고 나머지는 반납된다.
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithAllotment.decreaseStock(testId, 3L);
+
+        assertEquals(7L, stockServiceWithAllotment.getLocalQuantity(testId));
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        stockServiceWithAllotment.releaseAll();
+
+        assertEquals(97L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithAllotment.decreaseStock(testId, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockServiceWithAllotment.releaseAll();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        System.out.println("stock.getQuantity() = " + stock.getQuantity());
+
+        Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
+        Assertions.assertThatThrownBy(() -> stockServiceWithAllotment.decreaseStock(testId, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
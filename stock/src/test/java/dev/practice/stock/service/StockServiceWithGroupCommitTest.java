@@ -0,0 +1,108 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithGroupCommitTest {
+
+    @Autowired
+    private StockServiceWithGroupCommit stockServiceWithGroupCommit;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithGroupCommit.decreaseStock(testId, 10L).join();
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        assertEquals(90L, stock.getQuantity());
+    }
+
+    // 대기 중인 요청이 없는 lane 은 제거된다.
+    @Test
+    void removeIdleLane() throws InterruptedException {
+
+        stockServiceWithGroupCommit.decreaseStock(testId, 10L).join();
+
+        // future 는 lane 을 제거하기 전에 완료되므로 잠시 기다린다.
+        for (int i = 0; i < 100 && stockServiceWithGroupCommit.getLaneCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, stockServiceWithGroupCommit.getLaneCount());
+    }
+
+    // 동시성 문제 해결, 재고가 부족한 요청만 실패한다.
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 110;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+        AtomicInteger failCount = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithGroupCommit.decreaseStock(testId, 1L).join();
+                } catch (CompletionException e) {
+                    failCount.incrementAndGet();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Stock stock = stockRepository.findById(testId).orElseThrow();
+
+        System.out.println("stock.getQuantity() = " + stock.getQuantity());
+
+        Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
+        Assertions.assertThat(failCount.get()).isEqualTo(10);
+    }
+}
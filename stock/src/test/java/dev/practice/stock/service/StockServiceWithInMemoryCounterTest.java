@@ -0,0 +1,104 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithInMemoryCounterTest {
+
+    @Autowired
+    private StockServiceWithInMemoryCounter stockServiceWithInMemoryCounter;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트, checkpoint 후 DB 에 반영된다.
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithInMemoryCounter.decreaseStock(testId, 1L);
+        stockServiceWithInMemoryCounter.decreaseStock(testId, 2L);
+
+        assertEquals(97L, stockServiceWithInMemoryCounter.getQuantity(testId));
+
+        stockServiceWithInMemoryCounter.checkpoint();
+
+        assertEquals(97L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void decreaseStockInsufficient() {
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithInMemoryCounter.decreaseStock(testId, 101L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockServiceWithInMemoryCounter.getQuantity(testId));
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithInMemoryCounter.decreaseStock(testId, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockServiceWithInMemoryCounter.checkpoint();
+
+        Long quantity = stockRepository.findById(testId).orElseThrow().getQuantity();
+
+        System.out.println("quantity = " + quantity);
+
+        Assertions.assertThat(quantity).isEqualTo(0L);
+        Assertions.assertThatThrownBy(() -> stockServiceWithInMemoryCounter.decreaseStock(testId, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,192 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockBatchRepository;
+import dev.practice.stock.repository.StockCheckpointRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockJournal;
+import dev.practice.stock.support.StockMetrics;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithJournalTest {
+
+    @Autowired
+    private StockServiceWithJournal stockServiceWithJournal;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private StockBatchRepository stockBatchRepository;
+
+    @Autowired
+    private StockCheckpointRepository stockCheckpointRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StockMetrics stockMetrics;
+
+    private static final int JOURNAL_SIZE_BYTES = 64 + 32 * 1024;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithJournal.decreaseStock(testId, 10L).join();
+
+        assertEquals(90L, stockServiceWithJournal.getQuantity(testId));
+    }
+
+    @Test
+    void decreaseStockInsufficient() {
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithJournal.decreaseStock(testId, 101L).join())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockServiceWithJournal.getQuantity(testId));
+    }
+
+    // 동시성 문제 해결, 재고가 부족한 요청만 실패한다.
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 110;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+        AtomicInteger failCount = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithJournal.decreaseStock(testId, 1L).join();
+                } catch (CompletionException e) {
+                    failCount.incrementAndGet();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Long quantity = stockServiceWithJournal.getQuantity(testId);
+
+        System.out.println("quantity = " + quantity);
+
+        Assertions.assertThat(quantity).isEqualTo(0L);
+        Assertions.assertThat(failCount.get()).isEqualTo(10);
+        Assertions.assertThat(awaitCheckpointed(0L)).isEqualTo(0L);
+    }
+
+    // DB 에 반영(commit)한 뒤 journal header 를 기록하기 전에 죽어도, 반영된 감소를 다시 적용하지 않는다.
+    @Test
+    void replayFromCheckpointRow(@TempDir Path directory) throws InterruptedException {
+
+        Path path = directory.resolve("stock.journal");
+
+        StockServiceWithJournal first = newService(path);
+        first.start();
+        first.decreaseStock(testId, 10L).join();
+        first.shutdown();
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        // sequence 2 를 기록하고, checkpoint 트랜잭션(수량 + row)까지 commit 된 상황을 만든다. header 는 1 그대로이다.
+        try (StockJournal journal = new StockJournal(path, JOURNAL_SIZE_BYTES)) {
+            journal.replay((sequence, id, quantity) -> {});
+            assertEquals(2L, journal.append(testId, 10L));
+            journal.force();
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            stockRepository.updateQuantityIfLower(testId, 80L);
+            stockCheckpointRepository.advance("journal:" + path.toAbsolutePath().normalize(), 2L);
+        });
+
+        StockServiceWithJournal second = newService(path);
+        second.start();
+        try {
+            assertEquals(80L, second.getQuantity(testId));
+        } finally {
+            second.shutdown();
+        }
+    }
+
+    // journal 이 batch 하나도 담지 못하는 크기면 만들 수 없다.
+    @Test
+    void rejectJournalSmallerThanBatch(@TempDir Path directory) {
+
+        Assertions.assertThatThrownBy(() -> new StockServiceWithJournal(stockRepository, stockBatchRepository,
+                        stockCheckpointRepository, transactionTemplate, eventPublisher, stockMetrics,
+                        directory.resolve("stock.journal").toString(), 64 + 32 * 63, 1024, 1024, 64, 100L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private StockServiceWithJournal newService(Path path) {
+        return new StockServiceWithJournal(stockRepository, stockBatchRepository, stockCheckpointRepository,
+                transactionTemplate, eventPublisher, stockMetrics,
+                path.toString(), JOURNAL_SIZE_BYTES, 1024, 1024, 64, 100L);
+    }
+
+    // checkpoint 주기가 지나면 DB 에 반영된다.
+    private Long awaitCheckpointed(Long expected) {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        Long quantity;
+        while (!(quantity = stockRepository.findById(testId).map(Stock::getQuantity).orElseThrow()).equals(expected)
+                && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return quantity;
+    }
+}
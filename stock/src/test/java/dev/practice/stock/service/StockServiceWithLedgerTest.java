@@ -0,0 +1,121 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockLedgerEntryRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.repository.StockSnapshotRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithLedgerTest {
+
+    @Autowired
+    private StockServiceWithLedger stockServiceWithLedger;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private StockLedgerEntryRepository stockLedgerEntryRepository;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+
+        stockServiceWithLedger.open(testId, 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockServiceWithLedger.evictBalance(testId);
+        stockLedgerEntryRepository.deleteAllInBatch();
+        stockSnapshotRepository.deleteAllInBatch();
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트, compaction 전후 수량이 같다.
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithLedger.decreaseStock(testId, 1L);
+        stockServiceWithLedger.decreaseStock(testId, 2L);
+        stockServiceWithLedger.increaseStock(testId, 5L);
+
+        assertEquals(102L, stockServiceWithLedger.getQuantity(testId));
+
+        stockServiceWithLedger.compact(testId);
+
+        assertEquals(102L, stockSnapshotRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(102L, stockServiceWithLedger.getQuantity(testId));
+        assertEquals(3L, stockLedgerEntryRepository.count());
+    }
+
+    @Test
+    void decreaseStockInsufficient() {
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithLedger.decreaseStock(testId, 101L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockServiceWithLedger.getQuantity(testId));
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithLedger.decreaseStock(testId, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockServiceWithLedger.compactAll();
+
+        Long quantity = stockServiceWithLedger.getQuantity(testId);
+
+        System.out.println("quantity = " + quantity);
+
+        Assertions.assertThat(quantity).isEqualTo(0L);
+        Assertions.assertThat(stockSnapshotRepository.findById(testId).orElseThrow().getQuantity()).isEqualTo(0L);
+        Assertions.assertThatThrownBy(() -> stockServiceWithLedger.decreaseStock(testId, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,205 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.Stock;
+import dev.practice.stock.repository.StockBatchRepository;
+import dev.practice.stock.repository.StockCheckpointRepository;
+import dev.practice.stock.repository.StockRepository;
+import dev.practice.stock.support.StockMetrics;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithOffHeapTableTest {
+
+    @Autowired
+    private StockServiceWithOffHeapTable stockServiceWithOffHeapTable;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private StockBatchRepository stockBatchRepository;
+
+    @Autowired
+    private StockCheckpointRepository stockCheckpointRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StockMetrics stockMetrics;
+
+    private Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+
+        Stock stock = Stock.builder()
+                .productId(1L)
+                .quantity(100L)
+                .build();
+
+        stockRepository.save(stock);
+
+        testId = stock.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트, flush 후 DB 에 반영된다.
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithOffHeapTable.decreaseStock(testId, 1L);
+        stockServiceWithOffHeapTable.decreaseStock(testId, 2L);
+
+        assertEquals(97L, stockServiceWithOffHeapTable.getQuantity(testId));
+
+        stockServiceWithOffHeapTable.flush();
+
+        assertEquals(97L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void decreaseStockInsufficient() {
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithOffHeapTable.decreaseStock(testId, 101L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockServiceWithOffHeapTable.getQuantity(testId));
+    }
+
+    // 입고는 DB 와 테이블에 같이 더한다. 이후의 감소도 flush 로 DB 에 반영된다.
+    @Test
+    void restock() {
+
+        stockServiceWithOffHeapTable.decreaseStock(testId, 10L);
+        stockServiceWithOffHeapTable.restock(testId, 50L);
+
+        assertEquals(140L, stockServiceWithOffHeapTable.getQuantity(testId));
+
+        stockServiceWithOffHeapTable.flush();
+
+        assertEquals(140L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        stockServiceWithOffHeapTable.decreaseStock(testId, 40L);
+        stockServiceWithOffHeapTable.flush();
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+    }
+
+    // DB 를 새로 만들어서 epoch row 가 없으면, 파일에 남은 이전 DB 의 재고를 쓰지 않는다.
+    @Test
+    void clearWhenEpochChanged(@TempDir Path directory) {
+
+        Path path = directory.resolve("stock.table");
+
+        StockServiceWithOffHeapTable first = newService(path);
+        first.start();
+        first.decreaseStock(testId, 10L);
+        first.shutdown();
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        // 같은 id 의 재고가 100 으로 새로 만들어진 상황
+        stockCheckpointRepository.deleteById("off-heap:" + path.toAbsolutePath().normalize());
+        transactionTemplate.executeWithoutResult(status -> stockRepository.increaseQuantity(testId, 10L));
+
+        StockServiceWithOffHeapTable second = newService(path);
+        second.start();
+        try {
+            assertEquals(100L, second.getQuantity(testId));
+            second.decreaseStock(testId, 1L);
+            assertEquals(99L, second.getQuantity(testId));
+        } finally {
+            second.shutdown();
+        }
+    }
+
+    // 재시작해도 이미 DB 에 반영한 재고는 다시 반영하지 않는다. (reconcile 은 dirty 레코드만)
+    @Test
+    void reconcileOnlyDirty(@TempDir Path directory) {
+
+        Path path = directory.resolve("stock.table");
+
+        StockServiceWithOffHeapTable first = newService(path);
+        first.start();
+        first.decreaseStock(testId, 10L);
+        first.shutdown();
+
+        assertEquals(90L, stockRepository.findById(testId).orElseThrow().getQuantity());
+
+        // 다시 반영하면 90 으로 돌아가는지 확인하기 위해 DB 만 바꾼다.
+        transactionTemplate.executeWithoutResult(status -> stockRepository.increaseQuantity(testId, 10L));
+
+        StockServiceWithOffHeapTable second = newService(path);
+        second.start();
+        try {
+            assertEquals(0L, second.reconcile());
+            assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        } finally {
+            second.shutdown();
+        }
+    }
+
+    private StockServiceWithOffHeapTable newService(Path path) {
+        return new StockServiceWithOffHeapTable(stockRepository, stockBatchRepository, stockCheckpointRepository,
+                transactionTemplate, eventPublisher, stockMetrics,
+                path.toString(), 16, 500, 100L, 1000L);
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithOffHeapTable.decreaseStock(testId, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        stockServiceWithOffHeapTable.flush();
+
+        Long quantity = stockRepository.findById(testId).orElseThrow().getQuantity();
+
+        System.out.println("quantity = " + quantity);
+
+        Assertions.assertThat(quantity).isEqualTo(0L);
+        Assertions.assertThatThrownBy(() -> stockServiceWithOffHeapTable.decreaseStock(testId, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
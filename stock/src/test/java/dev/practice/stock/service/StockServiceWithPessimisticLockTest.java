@@ -2,6 +2,7 @@ package dev.practice.stock.service;
 
 import dev.practice.stock.domain.Stock;
 import dev.practice.stock.repository.StockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -25,6 +27,9 @@ class StockServiceWithPessimisticLockTest {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private Long testId = 1L;
 
     @BeforeEach
@@ -87,4 +92,94 @@ class StockServiceWithPessimisticLockTest {
 
         Assertions.assertThat(stock.getQuantity()).isEqualTo(0L);
     }
-}
\ No newline at end of file
+
+    // 여러 재고 감소 기능 테스트
+    @Test
+    void decreaseStocks() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        stockServiceWithPessimisticLock.decreaseStocks(List.of(
+                new StockDecreaseCommand(otherId, 20L),
+                new StockDecreaseCommand(testId, 10L),
+                new StockDecreaseCommand(testId, 5L)));
+
+        assertEquals(85L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(80L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
+    // 하나라도 재고가 부족하면 전체 롤백
+    @Test
+    void decreaseStocksAllOrNothing() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(5L)
+                .build()).getId();
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithPessimisticLock.decreaseStocks(List.of(
+                        new StockDecreaseCommand(testId, 10L),
+                        new StockDecreaseCommand(otherId, 10L))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(100L, stockRepository.findById(testId).orElseThrow().getQuantity());
+        assertEquals(5L, stockRepository.findById(otherId).orElseThrow().getQuantity());
+    }
+
+    // 주문 라인 순서가 서로 반대인 요청이 동시에 와도 데드락 없이 처리
+    @Test
+    void concurrencyTestByThread100WithOppositeOrder() {
+
+        Long otherId = stockRepository.save(Stock.builder()
+                .productId(2L)
+                .quantity(100L)
+                .build()).getId();
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            List<StockDecreaseCommand> commands = (i % 2 == 0)
+                    ? List.of(new StockDecreaseCommand(testId, 1L), new StockDecreaseCommand(otherId, 1L))
+                    : List.of(new StockDecreaseCommand(otherId, 1L), new StockDecreaseCommand(testId, 1L));
+
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithPessimisticLock.decreaseStocks(commands);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Assertions.assertThat(stockRepository.findById(testId).orElseThrow().getQuantity()).isEqualTo(0L);
+        Assertions.assertThat(stockRepository.findById(otherId).orElseThrow().getQuantity()).isEqualTo(0L);
+    }
+
+    // 락 대기, 트랜잭션 시간, 재고 부족 지표 기록
+    @Test
+    void metrics() {
+
+        long waits = meterRegistry.timer("stock.lock.wait", "strategy", "pessimistic", "stock", "all").count();
+        long transactions = meterRegistry.timer("stock.transaction", "strategy", "pessimistic", "stock", "all").count();
+        double insufficient = meterRegistry.counter("stock.insufficient", "strategy", "pessimistic", "stock", "all").count();
+
+        stockServiceWithPessimisticLock.decreaseStock(testId, 10L);
+        Assertions.assertThatThrownBy(() -> stockServiceWithPessimisticLock.decreaseStock(testId, 1000L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertEquals(waits + 2, meterRegistry.timer("stock.lock.wait", "strategy", "pessimistic", "stock", "all").count());
+        assertEquals(transactions + 2, meterRegistry.timer("stock.transaction", "strategy", "pessimistic", "stock", "all").count());
+        assertEquals(insufficient + 1, meterRegistry.counter("stock.insufficient", "strategy", "pessimistic", "stock", "all").count());
+    }
+}
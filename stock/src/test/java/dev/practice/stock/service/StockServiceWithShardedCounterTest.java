@@ -0,0 +1,103 @@
+package dev.practice.stock.service;
+
+import dev.practice.stock.domain.StockShard;
+import dev.practice.stock.repository.StockShardRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class StockServiceWithShardedCounterTest {
+
+    @Autowired
+    private StockServiceWithShardedCounter stockServiceWithShardedCounter;
+
+    @Autowired
+    private StockShardRepository stockShardRepository;
+
+    private final Long testId = 1L;
+
+    @BeforeEach
+    void setUp() {
+        stockServiceWithShardedCounter.createShards(testId, 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockShardRepository.deleteAllInBatch();
+    }
+
+    // 기능 테스트
+    @Test
+    void decreaseStock() {
+
+        stockServiceWithShardedCounter.decreaseStock(testId, 10L);
+
+        assertEquals(90L, stockServiceWithShardedCounter.getQuantity(testId));
+    }
+
+    // 하나의 shard 로 부족하면 여러 shard 에서 나눠서 감소
+    @Test
+    void decreaseStockAcrossShards() {
+
+        stockServiceWithShardedCounter.decreaseStock(testId, 95L);
+
+        assertEquals(5L, stockServiceWithShardedCounter.getQuantity(testId));
+
+        Assertions.assertThatThrownBy(() -> stockServiceWithShardedCounter.decreaseStock(testId, 6L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 균등 재분배
+    @Test
+    void rebalance() {
+
+        stockServiceWithShardedCounter.decreaseStock(testId, 95L);
+        stockServiceWithShardedCounter.rebalance(testId);
+
+        Assertions.assertThat(stockShardRepository.findAll())
+                .extracting(StockShard::getQuantity)
+                .allMatch(quantity -> quantity <= 1L);
+        assertEquals(5L, stockServiceWithShardedCounter.getQuantity(testId));
+    }
+
+    // 동시성 문제 해결
+    @Test
+    void concurrencyTestByThread100() {
+
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    stockServiceWithShardedCounter.decreaseStock(testId, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Long quantity = stockServiceWithShardedCounter.getQuantity(testId);
+
+        System.out.println("quantity = " + quantity);
+
+        Assertions.assertThat(quantity).isEqualTo(0L);
+    }
+}
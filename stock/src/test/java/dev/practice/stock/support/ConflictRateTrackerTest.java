@@ -0,0 +1,85 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRateTrackerTest {
+
+    private final ConflictRateTracker<Long> tracker = new ConflictRateTracker<>(60_000L, 10, 10, 0.5, 0.1);
+
+    // 표본이 minSamples 보다 적으면 모드를 바꾸지 않는다.
+    @Test
+    void minSamples() {
+
+        for (int i = 0; i < 9; i++) {
+            tracker.record(1L, true);
+        }
+
+        assertFalse(tracker.isPessimistic(1L));
+
+        tracker.record(1L, true);
+
+        assertTrue(tracker.isPessimistic(1L));
+    }
+
+    // 들어갈 때와 나올 때 기준값이 다르다. (hysteresis)
+    @Test
+    void hysteresis() {
+
+        for (int i = 0; i < 10; i++) {
+            tracker.record(1L, true);
+        }
+        assertTrue(tracker.isPessimistic(1L));
+
+        // 충돌률 10/40 = 0.25, enterThreshold 보다 낮지만 exitThreshold 보다 높으므로 비관적 모드 유지
+        for (int i = 0; i < 30; i++) {
+            tracker.record(1L, false);
+        }
+        assertTrue(tracker.isPessimistic(1L));
+
+        // 충돌률 10/100 = 0.1
+        for (int i = 0; i < 60; i++) {
+            tracker.record(1L, false);
+        }
+        assertFalse(tracker.isPessimistic(1L));
+    }
+
+    @Test
+    void enterAndExit() {
+
+        assertFalse(tracker.enter(1L));
+        assertTrue(tracker.enter(1L));
+        assertFalse(tracker.enter(2L));
+
+        tracker.exit(1L);
+        tracker.exit(1L);
+
+        assertFalse(tracker.enter(1L));
+    }
+
+    // window 안에 기록이 없고 진행 중인 요청도 없는 키의 상태는 지워진다.
+    @Test
+    void evictIdle() throws InterruptedException {
+
+        ConflictRateTracker<Long> shortWindow = new ConflictRateTracker<>(100L, 10, 10, 0.5, 0.1);
+
+        shortWindow.record(1L, true);
+        shortWindow.record(2L, true);
+        shortWindow.enter(2L);
+        assertEquals(2, shortWindow.size());
+
+        Thread.sleep(250L);
+
+        // 다음 기록 때 window 가 지난 키를 지운다. 진행 중인 요청이 있는 2 는 남는다.
+        shortWindow.record(3L, false);
+        assertEquals(2, shortWindow.size());
+        assertEquals(0.0, shortWindow.conflictRate(1L));
+
+        shortWindow.exit(2L);
+        Thread.sleep(250L);
+
+        shortWindow.record(3L, false);
+        assertEquals(1, shortWindow.size());
+    }
+}
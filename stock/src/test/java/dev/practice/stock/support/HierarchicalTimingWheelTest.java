@@ -0,0 +1,70 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // tick 10ms, 한 바퀴 80ms
+    private final HierarchicalTimingWheel timingWheel = new HierarchicalTimingWheel("test-wheel", 10L, 8, executor);
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.close();
+        executor.shutdownNow();
+    }
+
+    // 한 바퀴를 넘는 작업은 상위 휠을 거쳐서 실행된다.
+    @Test
+    void schedule() throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+
+        timingWheel.schedule(20L, latch::countDown);
+        timingWheel.schedule(200L, latch::countDown);
+        timingWheel.schedule(1000L, latch::countDown);
+
+        assertEquals(3, timingWheel.size());
+        assertTrue(latch.await(3, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 990L);
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    void cancel() throws InterruptedException {
+
+        AtomicInteger executed = new AtomicInteger();
+
+        HierarchicalTimingWheel.Timeout timeout = timingWheel.schedule(50L, executed::incrementAndGet);
+        timingWheel.schedule(100L, executed::incrementAndGet);
+
+        timeout.cancel();
+        assertEquals(1, timingWheel.size());
+
+        Thread.sleep(300L);
+
+        assertEquals(1, executed.get());
+    }
+
+    // 이미 만료된 작업은 바로 실행된다.
+    @Test
+    void scheduleExpired() throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        timingWheel.schedule(0L, latch::countDown);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,163 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStockTableTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tryDecrement() {
+
+        try (OffHeapStockTable table = new OffHeapStockTable(directory.resolve("stock.table"), 16)) {
+            assertTrue(table.putIfAbsent(1L, 10L, 10L));
+            assertFalse(table.putIfAbsent(1L, 10L, 20L));
+
+            assertEquals(7L, table.tryDecrement(1L, 3L));
+            assertEquals(OffHeapStockTable.NOT_ENOUGH, table.tryDecrement(1L, 8L));
+            assertEquals(OffHeapStockTable.NOT_LOADED, table.tryDecrement(2L, 1L));
+            assertEquals(12L, table.add(1L, 5L));
+
+            assertEquals(10L, table.getProductId(1L));
+            assertEquals(2L, table.getVersion(1L));
+            assertEquals(1L, table.size());
+        }
+    }
+
+    // 다시 열면 적재 없이 그대로 사용한다.
+    @Test
+    void reopen() {
+
+        Path path = directory.resolve("stock.table");
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            for (long id = 1; id <= 16; id++) {
+                table.putIfAbsent(id, id * 10, 100L);
+                table.tryDecrement(id, id);
+            }
+            assertThrows(IllegalStateException.class, () -> table.putIfAbsent(17L, 1L, 1L));
+        }
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            Map<Long, Long> quantities = new HashMap<>();
+            table.forEach((id, productId, quantity, version) -> {
+                assertEquals(id * 10, productId);
+                assertEquals(1L, version);
+                quantities.put(id, quantity);
+            });
+
+            assertEquals(16, quantities.size());
+            for (long id = 1; id <= 16; id++) {
+                assertEquals(100L - id, quantities.get(id));
+                assertEquals(100L - id, table.get(id));
+            }
+            assertEquals(16L, table.size());
+        }
+
+        assertThrows(IllegalStateException.class, () -> new OffHeapStockTable(path, 32));
+    }
+
+    // clear 는 모든 레코드를 지우고 epoch 를 바꾼다. 다시 열어도 그대로이다.
+    @Test
+    void clear() {
+
+        Path path = directory.resolve("stock.table");
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            assertEquals(0L, table.epoch());
+            table.putIfAbsent(1L, 1L, 100L);
+
+            table.clear(7L);
+
+            assertEquals(OffHeapStockTable.NOT_LOADED, table.get(1L));
+            assertEquals(0L, table.size());
+        }
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            assertEquals(7L, table.epoch());
+            assertEquals(OffHeapStockTable.NOT_LOADED, table.get(1L));
+            assertTrue(table.putIfAbsent(1L, 1L, 50L));
+        }
+    }
+
+    // 반영한 version 이후에 바뀐 재고만 dirty 로 넘긴다. 다시 열어도 그대로이다.
+    @Test
+    void forEachDirty() {
+
+        Path path = directory.resolve("stock.table");
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            table.putIfAbsent(1L, 1L, 100L);
+            table.putIfAbsent(2L, 2L, 100L);
+            table.tryDecrement(1L, 1L);
+            table.tryDecrement(2L, 2L);
+
+            Map<Long, Long> versions = new HashMap<>();
+            table.forEachDirty((id, productId, quantity, version) -> versions.put(id, version));
+            assertEquals(Map.of(1L, 1L, 2L, 1L), versions);
+
+            table.markFlushed(1L, 1L);
+            table.markFlushed(2L, 1L);
+            table.tryDecrement(2L, 2L);
+        }
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            Map<Long, Long> quantities = new HashMap<>();
+            table.forEachDirty((id, productId, quantity, version) -> quantities.put(id, quantity));
+            assertEquals(Map.of(2L, 96L), quantities);
+        }
+    }
+
+    // 같은 파일은 하나만 열 수 있다. 먼저 연 테이블은 그대로 사용할 수 있다.
+    @Test
+    void lock() {
+
+        Path path = directory.resolve("stock.table");
+
+        try (OffHeapStockTable table = new OffHeapStockTable(path, 16)) {
+            assertThrows(IllegalStateException.class, () -> new OffHeapStockTable(path, 16));
+
+            assertTrue(table.putIfAbsent(1L, 1L, 100L));
+            assertEquals(99L, table.tryDecrement(1L, 1L));
+        }
+    }
+
+    @Test
+    void concurrency() throws InterruptedException {
+
+        try (OffHeapStockTable table = new OffHeapStockTable(directory.resolve("stock.table"), 16)) {
+            table.putIfAbsent(1L, 1L, 1000L);
+
+            int threadCount = 2000;
+            ExecutorService executorService = Executors.newFixedThreadPool(32);
+            CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+            for (int i = 0; i < threadCount; i++) {
+                executorService.execute(() -> {
+                    try {
+                        table.tryDecrement(1L, 1L);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                });
+            }
+
+            countDownLatch.await();
+            executorService.shutdown();
+
+            assertEquals(0L, table.get(1L));
+            assertEquals(1000L, table.getVersion(1L));
+        }
+    }
+}
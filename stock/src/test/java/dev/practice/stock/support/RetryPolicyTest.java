@@ -0,0 +1,62 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(5, 10L, 200L, 10_000L);
+
+    // 대기 시간은 이전 값과 상관없이 항상 [base, max] 안에 있다.
+    @Test
+    void delayBounds() {
+
+        long delayMillis = retryPolicy.getBaseDelayMillis();
+
+        for (int i = 0; i < 10_000; i++) {
+            delayMillis = retryPolicy.nextDelayMillis(delayMillis);
+
+            assertTrue(delayMillis >= 10L, "delay = " + delayMillis);
+            assertTrue(delayMillis <= 200L, "delay = " + delayMillis);
+        }
+
+        // 이전 값이 max 를 넘거나 base 보다 작아도 범위를 벗어나지 않는다.
+        assertTrue(retryPolicy.nextDelayMillis(Long.MAX_VALUE / 4) <= 200L);
+        assertTrue(retryPolicy.nextDelayMillis(0L) >= 10L);
+    }
+
+    // 최대 시도 횟수에 도달하면 더 이상 재시도하지 않는다.
+    @Test
+    void stopAfterMaxAttempts() {
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        int attempts = 1;
+        while (retryPolicy.canRetry(attempts, retryPolicy.getMaxDelayMillis(), deadline)) {
+            attempts++;
+        }
+
+        assertEquals(5, attempts);
+    }
+
+    // 기다리고 나면 deadline 을 넘는 경우에도 재시도하지 않는다.
+    @Test
+    void stopAfterDeadline() {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+
+        assertTrue(retryPolicy.canRetry(1, 10L, deadline));
+        assertFalse(retryPolicy.canRetry(1, 200L, deadline));
+    }
+
+    // 잘못된 정책은 만들 수 없다.
+    @Test
+    void invalidPolicy() {
+
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, 10L, 200L, 10_000L));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(5, 10L, 5L, 10_000L));
+    }
+}
@@ -0,0 +1,101 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockCounterTableTest {
+
+    private final StockCounterTable table = new StockCounterTable(16);
+
+    @Test
+    void putIfAbsent() {
+
+        assertTrue(table.putIfAbsent(1L, 10L));
+        assertFalse(table.putIfAbsent(1L, 20L));
+
+        assertEquals(10L, table.get(1L));
+        assertEquals(StockCounterTable.NOT_LOADED, table.get(2L));
+    }
+
+    @Test
+    void tryDecrement() {
+
+        table.putIfAbsent(1L, 10L);
+
+        assertEquals(7L, table.tryDecrement(1L, 3L));
+        assertEquals(StockCounterTable.NOT_ENOUGH, table.tryDecrement(1L, 8L));
+        assertEquals(0L, table.tryDecrement(1L, 7L));
+        assertEquals(StockCounterTable.NOT_LOADED, table.tryDecrement(2L, 1L));
+        assertEquals(5L, table.add(1L, 5L));
+    }
+
+    // 용량이 가득 차면 더 등록할 수 없다. (linear probing 으로 빈 슬롯을 모두 찾는다.)
+    @Test
+    void full() {
+
+        for (long id = 1; id <= 16; id++) {
+            assertTrue(table.putIfAbsent(id, id));
+        }
+        for (long id = 1; id <= 16; id++) {
+            assertEquals(id, table.get(id));
+        }
+
+        assertThrows(IllegalStateException.class, () -> table.putIfAbsent(17L, 1L));
+    }
+
+    // 바뀐 재고만 한번 꺼내진다.
+    @Test
+    void drainDirty() {
+
+        table.putIfAbsent(1L, 10L);
+        table.putIfAbsent(2L, 10L);
+        table.putIfAbsent(3L, 10L);
+
+        table.tryDecrement(1L, 1L);
+        table.tryDecrement(1L, 1L);
+        table.tryDecrement(3L, 4L);
+
+        Map<Long, Long> drained = new HashMap<>();
+        assertEquals(2, table.drainDirty(drained::put));
+        assertEquals(Map.of(1L, 8L, 3L, 6L), drained);
+
+        assertEquals(0, table.drainDirty((id, quantity) -> fail()));
+
+        table.markDirty(2L);
+        drained.clear();
+        assertEquals(1, table.drainDirty(drained::put));
+        assertEquals(Map.of(2L, 10L), drained);
+    }
+
+    @Test
+    void concurrency() throws InterruptedException {
+
+        table.putIfAbsent(1L, 1000L);
+
+        int threadCount = 2000;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.execute(() -> {
+                try {
+                    table.tryDecrement(1L, 1L);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+
+        countDownLatch.await();
+        executorService.shutdown();
+
+        assertEquals(0L, table.get(1L));
+    }
+}
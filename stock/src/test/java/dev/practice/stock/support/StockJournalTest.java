@@ -0,0 +1,115 @@
+package dev.practice.stock.support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockJournalTest {
+
+    private static final int SIZE_BYTES = 64 + 32 * 4;
+
+    @TempDir
+    Path directory;
+
+    // checkpoint 이후 레코드만 다시 적용하고, 그 뒤에 이어서 쓴다.
+    @Test
+    void replay() {
+
+        Path path = directory.resolve("stock.journal");
+
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            journal.replay((sequence, id, quantity) -> fail());
+            journal.append(1L, 1L);
+            journal.append(2L, 2L);
+            journal.append(1L, 3L);
+            journal.force();
+            journal.markCheckpoint(1L);
+        }
+
+        List<long[]> replayed = new ArrayList<>();
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            assertEquals(2, journal.replay((sequence, id, quantity) -> replayed.add(new long[]{sequence, id, quantity})));
+            assertEquals(3L, journal.lastSequence());
+            assertEquals(4L, journal.append(3L, 4L));
+            assertFalse(journal.hasRemaining(1));
+        }
+
+        assertArrayEquals(new long[]{2L, 2L, 2L}, replayed.get(0));
+        assertArrayEquals(new long[]{3L, 1L, 3L}, replayed.get(1));
+    }
+
+    // reset 이후 뒤에 남은 이전 레코드는 다시 적용하지 않는다.
+    @Test
+    void reset() {
+
+        Path path = directory.resolve("stock.journal");
+
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            journal.replay((sequence, id, quantity) -> fail());
+            journal.append(1L, 1L);
+            journal.append(1L, 1L);
+            journal.append(1L, 1L);
+
+            assertThrows(IllegalStateException.class, journal::reset);
+
+            journal.markCheckpoint(3L);
+            journal.reset();
+            journal.append(2L, 5L);
+            journal.force();
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            assertEquals(1, journal.replay((sequence, id, quantity) -> replayed.add(sequence)));
+            assertEquals(List.of(4L), replayed);
+            assertEquals(5L, journal.append(2L, 1L));
+        }
+    }
+
+    // force 에 실패하면 마지막 force 이후 레코드를 버리고, 그 위치부터 다시 쓴다.
+    @Test
+    void rollback() {
+
+        Path path = directory.resolve("stock.journal");
+
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            journal.replay((sequence, id, quantity) -> fail());
+            journal.append(1L, 1L);
+            journal.force();
+            journal.append(2L, 2L);
+
+            journal.rollback();
+
+            assertEquals(1L, journal.lastSequence());
+            assertEquals(2L, journal.append(3L, 3L));
+            journal.force();
+        }
+
+        List<long[]> replayed = new ArrayList<>();
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            assertEquals(2, journal.replay((sequence, id, quantity) -> replayed.add(new long[]{sequence, id, quantity})));
+        }
+
+        assertArrayEquals(new long[]{1L, 1L, 1L}, replayed.get(0));
+        assertArrayEquals(new long[]{2L, 3L, 3L}, replayed.get(1));
+    }
+
+    // 같은 파일은 하나만 열 수 있다. 먼저 연 journal 은 그대로 사용할 수 있다.
+    @Test
+    void lock() {
+
+        Path path = directory.resolve("stock.journal");
+
+        try (StockJournal journal = new StockJournal(path, SIZE_BYTES)) {
+            assertThrows(IllegalStateException.class, () -> new StockJournal(path, SIZE_BYTES));
+
+            journal.replay((sequence, id, quantity) -> fail());
+            assertEquals(1L, journal.append(1L, 1L));
+        }
+    }
+}
@@ -0,0 +1,2 @@
+CREATE ALIAS IF NOT EXISTS GET_LOCK FOR 'dev.practice.stock.hermetic.H2NamedLocks.getLock';
+CREATE ALIAS IF NOT EXISTS RELEASE_LOCK FOR 'dev.practice.stock.hermetic.H2NamedLocks.releaseLock';